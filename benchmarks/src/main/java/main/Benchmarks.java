@@ -0,0 +1,38 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Setup helpers shared by the benchmarks.
+ */
+class Benchmarks {
+    private Benchmarks() { }
+
+    /**
+     * @return a new, empty temporary directory
+     */
+    static Path tempDir() throws IOException {
+        return Files.createTempDirectory("fitness-bench");
+    }
+
+    /**
+     * Creates an empty store whose journal (and legacy workouts.json) live in the given directory.
+     */
+    static InMemoryStore store(Path dir, boolean columnar) {
+        return new InMemoryStore(new Database(dir.resolve("journal"), dir.resolve("workouts.json").toFile(),
+                WriteBehind.DEFAULT_MAX_LATENCY_MILLIS, WriteBehind.DEFAULT_MAX_BATCH), columnar);
+    }
+
+    /**
+     * Deletes a directory and everything in it.
+     */
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : s.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package main;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Builds synthetic but realistic fitness histories: N users, each with years of workouts (a cardio/strength mix
+ * over the same types and body parts the UI offers) and meals drawn from the default foods plus a larger
+ * synthetic catalog. Everything is derived from the seed, and each user from the seed and their index, so the same
+ * seed always gives the same data and any single user can be regenerated on its own.
+ * <p>
+ * Output goes straight into the app's formats: a journal directory, a legacy workouts.json, or a live store.
+ * <pre>
+ * java -cp target/benchmarks.jar main.DatasetGenerator --users=1000 --years=3 --seed=42 --journal=data/journal
+ * </pre>
+ */
+public class DatasetGenerator {
+    static final String[] CARDIO = {"Run", "Walk", "Cycle", "Swim"};
+    static final double[] CARDIO_WEIGHTS = {0.35, 0.35, 0.2, 0.1};
+    static final String[] BODY_PARTS = {"Chest", "Back", "Legs", "Shoulders", "Arms", "Core", "Full Body"};
+    static final String[] EXERCISES = {"Bench Press", "Deadlift", "Squat", "Overhead Press", "Row", "Curl", "Plank", "Lunge"};
+    private static final String[] FOOD_STYLES = {"Grilled", "Baked", "Raw", "Roasted", "Steamed", "Fried", "Smoked",
+            "Low-fat", "Organic", "Spicy"};
+    private static final String[] FOOD_BASES = {"Salmon", "Tofu", "Turkey", "Potato", "Pasta", "Lentils", "Spinach",
+            "Cheddar", "Almonds", "Quinoa", "Beef", "Carrot", "Bread", "Milk", "Rice Cake", "Chickpeas", "Avocado",
+            "Mango", "Pork", "Shrimp"};
+
+    /**
+     * The shape of the generated histories. Counts per day are Poisson; durations, portion sizes and food energy
+     * densities are log-normal; food popularity is Zipf.
+     */
+    static class Profile {
+        int users = 100;
+        int years = 2;
+        LocalDate lastDay = LocalDate.of(2025, 12, 31);
+        double workoutsPerWeek = 4;
+        double strengthShare = 0.35;
+        double mealsPerDay = 4;
+        int extraFoods = 200;
+        double foodSkew = 1.1;
+    }
+
+    final long seed;
+    final Profile profile;
+    final List<Food> catalog;
+    private final double[] foodCdf;
+
+    /**
+     * @param seed the seed every user's data is derived from
+     * @param profile the shape of the data
+     */
+    DatasetGenerator(long seed, Profile profile) {
+        this.seed = seed;
+        this.profile = profile;
+        catalog = new ArrayList<>(Food.getDefaultFoods());
+        Random r = new Random(seed);
+        for (int i = 0; i < profile.extraFoods; i++) {
+            String name = FOOD_STYLES[i / FOOD_BASES.length % FOOD_STYLES.length] + " " + FOOD_BASES[i % FOOD_BASES.length]
+                    + (i >= FOOD_STYLES.length * FOOD_BASES.length ? " " + (i / (FOOD_STYLES.length * FOOD_BASES.length) + 1) : "");
+            catalog.add(new Food(name, (int) Math.round(logNormal(r, 150, 0.6))));
+        }
+        foodCdf = new double[catalog.size()];
+        double sum = 0;
+        for (int i = 0; i < foodCdf.length; i++) {
+            sum += 1 / Math.pow(i + 1, profile.foodSkew);
+            foodCdf[i] = sum;
+        }
+        for (int i = 0; i < foodCdf.length; i++) foodCdf[i] /= sum;
+    }
+
+    /**
+     * @param user the user's index
+     * @return the user's email
+     */
+    static String email(int user) {
+        return "user" + user + "@example.com";
+    }
+
+    /**
+     * One user's generated history.
+     */
+    record History(String email, List<Workout> workouts, List<NutritionEntry> nutrition) { }
+
+    /**
+     * @param user the user's index, from 0 to profile.users - 1
+     * @return the user's history, the same every time for the same seed
+     */
+    History user(int user) {
+        Random r = new Random(seed * 1_000_003L + user);
+        List<Workout> workouts = new ArrayList<>();
+        List<NutritionEntry> nutrition = new ArrayList<>();
+        LocalDate first = profile.lastDay.minusYears(profile.years).plusDays(1);
+        // some people train a lot more than others
+        double activity = logNormal(r, 1, 0.4);
+        long nextId = (long) user << 32;
+        for (LocalDate d = first; !d.isAfter(profile.lastDay); d = d.plusDays(1)) {
+            int sessions = poisson(r, profile.workoutsPerWeek / 7 * activity);
+            for (int i = 0; i < sessions; i++) workouts.add(workout(r, d));
+            int meals = poisson(r, profile.mealsPerDay);
+            for (int i = 0; i < meals; i++) {
+                Food f = catalog.get(food(r));
+                int grams = (int) Math.max(10, Math.round(logNormal(r, 150, 0.5)));
+                LocalDateTime at = d.atTime(7 + r.nextInt(15), r.nextInt(60));
+                nutrition.add(new NutritionEntry(nextId++, f.name, grams, grams * f.kcalPer100g / 100, at));
+            }
+        }
+        return new History(email(user), workouts, nutrition);
+    }
+
+    /**
+     * Signs every user in and adds their history to the store, one batch per user.
+     * @param store the store to fill
+     */
+    void populate(InMemoryStore store) {
+        for (int u = 0; u < profile.users; u++) {
+            History h = user(u);
+            store.signIn(h.email(), "User " + u);
+            store.logBatch(h.email(), h.workouts(), h.nutrition());
+        }
+        store.database.flush();
+    }
+
+    /**
+     * Writes every user to a journal directory, as the app would have after logging it all.
+     * @param dir the journal directory; it should be empty
+     * @return the number of records written
+     */
+    long writeJournal(Path dir) throws IOException {
+        // the database's mapper carries the app's serialization settings; its own writer is not needed
+        Database db = new Database(dir);
+        ObjectMapper mapper = db.objectMapper;
+        db.close();
+        Journal journal = new Journal(dir, mapper);
+        long total = 0;
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(1 << 20);
+        for (int u = 0; u < profile.users; u++) {
+            History h = user(u);
+            List<JournalRecord> records = new ArrayList<>(h.workouts().size() + h.nutrition().size() + 1);
+            records.add(JournalRecord.user(new User(h.email(), "User " + u)));
+            for (Workout w : h.workouts()) records.add(JournalRecord.workout(h.email(), w));
+            for (NutritionEntry n : h.nutrition()) records.add(JournalRecord.nutrition(h.email(), n));
+            buf.reset();
+            journal.encode(records, buf);
+            journal.write(buf.toByteArray(), 0, buf.size(), records.size());
+            total += records.size();
+        }
+        journal.sync();
+        journal.close();
+        return total;
+    }
+
+    /**
+     * Writes every user's workouts in the legacy workouts.json format.
+     * @param file the file to write
+     */
+    void writeLegacyWorkouts(File file) {
+        Map<String, List<Workout>> all = new LinkedHashMap<>();
+        for (int u = 0; u < profile.users; u++) {
+            History h = user(u);
+            all.put(h.email(), h.workouts());
+        }
+        Database d = new Database(file.toPath().resolveSibling("journal-unused"), file, 0, 1);
+        d.writeWorkouts(all);
+        d.close();
+    }
+
+    private Workout workout(Random r, LocalDate d) {
+        // mornings and evenings
+        double hour = r.nextDouble() < 0.4 ? 7 + r.nextGaussian() : 18 + 1.5 * r.nextGaussian();
+        int minuteOfDay = (int) Math.max(0, Math.min(23 * 60 + 59, hour * 60));
+        LocalDateTime start = d.atTime(minuteOfDay / 60, minuteOfDay % 60);
+        int minutes = (int) Math.max(5, Math.round(logNormal(r, 40, 0.35)));
+        if (r.nextDouble() < profile.strengthShare) {
+            return Workout.strength("Lift", BODY_PARTS[r.nextInt(BODY_PARTS.length)], start,
+                    EXERCISES[r.nextInt(EXERCISES.length)], 3 + r.nextInt(3), 5 + r.nextInt(8), minutes, minutes * (5 + r.nextInt(4)));
+        }
+        String type = CARDIO[pick(r, CARDIO_WEIGHTS)];
+        double mph = switch (type) {
+            case "Run" -> 6 + r.nextGaussian();
+            case "Cycle" -> 14 + 2 * r.nextGaussian();
+            case "Swim" -> 2 + 0.3 * r.nextGaussian();
+            default -> 3 + 0.4 * r.nextGaussian();
+        };
+        double miles = Math.max(0.1, Math.round(mph * minutes / 60.0 * 10) / 10.0);
+        boolean steps = type.equals("Walk") && r.nextBoolean();
+        int kcal = (int) (minutes * (type.equals("Walk") ? 4 : 9) * (0.8 + 0.4 * r.nextDouble()));
+        return Workout.cardio(type, start, steps ? "Steps" : "Miles", steps ? null : miles,
+                steps ? (int) (miles * 2000) : null, minutes, kcal);
+    }
+
+    private int food(Random r) {
+        int i = Arrays.binarySearch(foodCdf, r.nextDouble());
+        return Math.min(i < 0 ? -i - 1 : i, foodCdf.length - 1);
+    }
+
+    private static int pick(Random r, double[] weights) {
+        double x = r.nextDouble();
+        for (int i = 0; i < weights.length - 1; i++) {
+            if ((x -= weights[i]) < 0) return i;
+        }
+        return weights.length - 1;
+    }
+
+    private static int poisson(Random r, double mean) {
+        double limit = Math.exp(-mean), p = 1;
+        int k = 0;
+        while ((p *= r.nextDouble()) > limit) k++;
+        return k;
+    }
+
+    private static double logNormal(Random r, double median, double sigma) {
+        return median * Math.exp(sigma * r.nextGaussian());
+    }
+
+    /**
+     * Generates a dataset from the command line.
+     * Options: --users, --years, --seed, --workouts-per-week, --meals-per-day, --strength-share, --extra-foods,
+     * and where to write it: --journal=DIR and/or --legacy=FILE.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> opts = options(args);
+        Profile p = new Profile();
+        p.users = Integer.parseInt(opts.getOrDefault("users", "100"));
+        p.years = Integer.parseInt(opts.getOrDefault("years", "2"));
+        p.workoutsPerWeek = Double.parseDouble(opts.getOrDefault("workouts-per-week", "4"));
+        p.mealsPerDay = Double.parseDouble(opts.getOrDefault("meals-per-day", "4"));
+        p.strengthShare = Double.parseDouble(opts.getOrDefault("strength-share", "0.35"));
+        p.extraFoods = Integer.parseInt(opts.getOrDefault("extra-foods", "200"));
+        DatasetGenerator g = new DatasetGenerator(Long.parseLong(opts.getOrDefault("seed", "42")), p);
+        long t0 = System.nanoTime();
+        if (opts.containsKey("journal")) {
+            long n = g.writeJournal(Path.of(opts.get("journal")));
+            System.out.println("Wrote " + n + " records to " + opts.get("journal"));
+        }
+        if (opts.containsKey("legacy")) {
+            g.writeLegacyWorkouts(new File(opts.get("legacy")));
+            System.out.println("Wrote " + opts.get("legacy"));
+        }
+        System.out.printf("Done in %.1f s%n", (System.nanoTime() - t0) / 1e9);
+    }
+
+    /* Parses --key=value arguments. */
+    static Map<String, String> options(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) continue;
+            int eq = a.indexOf('=');
+            if (eq < 0) opts.put(a.substring(2), "true");
+            else opts.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+        return opts;
+    }
+}
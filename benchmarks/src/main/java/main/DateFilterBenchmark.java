@@ -0,0 +1,83 @@
+package main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Calories burned on a day" three ways: the original refreshAllProgress pattern (parse every workout's startedAt
+ * and compare dates), filtering on the precomputed start day, and the day-indexed running totals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateFilterBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int workouts;
+
+    Path dir;
+    InMemoryStore store;
+    WorkoutService svc;
+    User user;
+    LocalDate day;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Benchmarks.tempDir();
+        store = Benchmarks.store(dir, false);
+        user = store.signIn("bench", "bench");
+        svc = new WorkoutService(store);
+        DatasetGenerator.Profile p = new DatasetGenerator.Profile();
+        p.workoutsPerWeek = 7;
+        p.years = workouts / 365 * 3 + 1;   // enough even for the least active users
+        List<Workout> all = new DatasetGenerator(1, p).user(0).workouts();
+        for (Workout w : all.subList(Math.max(0, all.size() - workouts), all.size())) store.addWorkout(user.email, w);
+        day = p.lastDay.minusDays(3);
+    }
+
+    @TearDown
+    public void close() throws IOException {
+        store.database.close();
+        Benchmarks.delete(dir);
+    }
+
+    @Benchmark
+    public int parseStartedAt() {
+        return svc.listWorkouts(user).stream()
+                .filter(w -> LocalDateTime.parse(w.startedAt).toLocalDate().equals(day))
+                .mapToInt(w -> w.estimatedCalories)
+                .sum();
+    }
+
+    @Benchmark
+    public int precomputedStartDay() {
+        int d = (int) day.toEpochDay();
+        int sum = 0;
+        for (Workout w : svc.listWorkouts(user)) if (w.startDay == d) sum += w.estimatedCalories;
+        return sum;
+    }
+
+    @Benchmark
+    public int dailyTotals() {
+        return svc.dailyCaloriesBurned(user, day);
+    }
+}
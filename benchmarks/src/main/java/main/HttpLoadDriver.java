@@ -0,0 +1,114 @@
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link LoadDriver} over HTTP: the same mix of writes and reads, sent to an in-process {@link ApiServer} with
+ * {@link HttpClient}, so latency includes the HTTP server, its request threads and JSON. Prints which threads
+ * the server ran requests on (virtual threads need JDK 21), and how many requests failed.
+ * <pre>
+ * java -cp target/benchmarks.jar main.HttpLoadDriver --model=open --rate=2000 --seconds=30 --clients=64 --users=1000
+ * </pre>
+ */
+public class HttpLoadDriver extends LoadDriver {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final String base;
+    private final LongAdder errors = new LongAdder();
+
+    HttpLoadDriver(InMemoryStore store, User[] users, double writeShare, LocalDate lastDay, int maxSamples, int port) {
+        super(store, null, users, writeShare, lastDay, maxSamples);
+        base = "http://localhost:" + port;
+    }
+
+    /* One request of the mix, as LoadDriver.operation issues it to the services. */
+    @Override void operation(Random r) {
+        User u = users[r.nextInt(users.length)];
+        LocalDate day = lastDay.minusDays(r.nextInt(365));
+        double x = r.nextDouble();
+        String user = "?email=" + u.email;
+        if (x < writeShare / 2) {
+            send(post("/workouts" + user, "{\"type\": \"Run\", \"startedAt\": \"" + day + "T12:00\", "
+                    + "\"distanceUnit\": \"Miles\", \"distanceValue\": 3.0, \"durationMin\": 30, \"estimatedCalories\": 300}"));
+        } else if (x < writeShare) {
+            send(post("/nutrition" + user, "{\"item\": \"Egg\", \"grams\": 50, \"kcal\": 70, \"date\": \"" + day + "\"}"));
+        } else if (x < writeShare + (1 - writeShare) / 2) {
+            send(get("/summary" + user + "&date=" + day));
+        } else {
+            String range = "&from=" + day.minusDays(6) + "&to=" + day;
+            send(get("/nutrition" + user + range));
+            send(get("/workouts" + user + range));
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(base + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private void send(HttpRequest req) {
+        try {
+            HttpResponse<byte[]> res = client.send(req, HttpResponse.BodyHandlers.ofByteArray());
+            if (res.statusCode() != 200) errors.increment();
+            sink = res.body().length;
+        } catch (IOException e) {
+            errors.increment();
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Options as for {@link LoadDriver}.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> opts = DatasetGenerator.options(args);
+        String model = opts.getOrDefault("model", "open");
+        double rate = Double.parseDouble(opts.getOrDefault("rate", "1000"));
+        int seconds = Integer.parseInt(opts.getOrDefault("seconds", "10"));
+        int clients = Integer.parseInt(opts.getOrDefault("clients", "32"));
+        DatasetGenerator.Profile p = new DatasetGenerator.Profile();
+        p.users = Integer.parseInt(opts.getOrDefault("users", "100"));
+        p.years = Integer.parseInt(opts.getOrDefault("years", "1"));
+        DatasetGenerator g = new DatasetGenerator(Long.parseLong(opts.getOrDefault("seed", "42")), p);
+
+        Path dir = Files.createTempDirectory("fitness-http-load");
+        InMemoryStore store = new InMemoryStore(new Database(dir.resolve("journal"), dir.resolve("workouts.json").toFile(),
+                WriteBehind.DEFAULT_MAX_LATENCY_MILLIS, WriteBehind.DEFAULT_MAX_BATCH));
+        g.populate(store);
+        User[] users = new User[p.users];
+        for (int u = 0; u < users.length; u++) users[u] = store.usersByEmail.get(DatasetGenerator.email(u));
+        ApiServer server = new ApiServer(store, 0);
+        server.start();
+        System.out.printf("Server on JDK %s, requests on %s%n", Runtime.version(),
+                server.virtualThreads() ? "virtual threads" : "a cached pool of platform threads");
+
+        int maxSamples = (int) Math.min(50_000_000, rate > 0 ? rate * seconds * 2 : 50_000_000);
+        HttpLoadDriver d = new HttpLoadDriver(store, users, Double.parseDouble(opts.getOrDefault("writes", "0.3")),
+                p.lastDay, maxSamples, server.port());
+        long start = System.nanoTime();
+        if (model.equals("closed")) d.closedLoop(rate, seconds, clients);
+        else d.openLoop(rate, seconds, clients);
+        d.report("HTTP " + model + " loop, " + clients + " clients", (System.nanoTime() - start) / 1e9);
+        System.out.printf("  %d failed requests%n", d.errors.sum());
+        server.stop();
+        store.database.close();
+    }
+}
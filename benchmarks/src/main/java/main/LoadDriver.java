@@ -0,0 +1,189 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the service layer at a target rate and reports latency percentiles. The store is preloaded with a
+ * {@link DatasetGenerator} dataset, then a mix of writes (log workout, log food) and reads (day totals, range
+ * lists) is issued against random users.
+ * <ul>
+ *     <li>open loop: requests are scheduled at fixed intervals regardless of how long earlier ones take, and
+ *     latency is measured from the scheduled time, so queueing delay counts (no coordinated omission)</li>
+ *     <li>closed loop: each client issues its next request as soon as the previous one returns (paced to the
+ *     target rate if one is given), which measures service time under a fixed concurrency</li>
+ * </ul>
+ * <pre>
+ * java -cp target/benchmarks.jar main.LoadDriver --model=open --rate=5000 --seconds=30 --clients=32 --users=1000
+ * </pre>
+ */
+public class LoadDriver {
+    private final InMemoryStore store;
+    private final WorkoutService workoutSvc;
+    private final NutritionService nutritionSvc;
+    final User[] users;
+    final double writeShare;
+    final LocalDate lastDay;
+    private final long[] latencies;
+    private final AtomicInteger recorded = new AtomicInteger();
+    /* Keeps the JIT from dropping the reads */
+    volatile long sink;
+
+    /**
+     * @param ingest the pipeline the services log through, or null to log through the store directly
+     */
+    LoadDriver(InMemoryStore store, IngestPipeline ingest, User[] users, double writeShare, LocalDate lastDay,
+               int maxSamples) {
+        this.store = store;
+        this.workoutSvc = new WorkoutService(store, ingest);
+        this.nutritionSvc = new NutritionService(store, ingest);
+        this.users = users;
+        this.writeShare = writeShare;
+        this.lastDay = lastDay;
+        latencies = new long[maxSamples];
+    }
+
+    /* One request of the mix. */
+    void operation(Random r) {
+        User u = users[r.nextInt(users.length)];
+        LocalDate day = lastDay.minusDays(r.nextInt(365));
+        double x = r.nextDouble();
+        if (x < writeShare / 2) {
+            workoutSvc.logWorkout(u, Workout.cardio("Run", LocalDateTime.of(day, LocalTime.NOON), "Miles", 3.0,
+                    null, 30, 300), store.database);
+        } else if (x < writeShare) {
+            nutritionSvc.logNutritionForDate(u, "Egg", 50, 70, day);
+        } else if (x < writeShare + (1 - writeShare) / 2) {
+            nutritionSvc.dailyCalories(u, day);
+            workoutSvc.dailyCaloriesBurned(u, day);
+        } else {
+            long n = NutritionRows.kcal(nutritionSvc.listForRange(u, day.minusDays(6), day));
+            for (Workout w : workoutSvc.listForRange(u, day.minusDays(6), day)) n += w.durationMin;
+            sink = n;
+        }
+    }
+
+    private void record(long nanos) {
+        int i = recorded.getAndIncrement();
+        if (i < latencies.length) latencies[i] = nanos;
+    }
+
+    /**
+     * Schedules requests every 1/rate seconds and runs them on the given number of threads.
+     */
+    void openLoop(double rate, int seconds, int clients) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long period = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        long total = (long) (rate * seconds);
+        Random seeds = new Random(1);
+        for (long i = 0; i < total; i++) {
+            long intended = start + i * period;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            Random r = new Random(seeds.nextLong());
+            pool.execute(() -> {
+                operation(r);
+                record(System.nanoTime() - intended);
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+    }
+
+    /**
+     * Runs the given number of clients back to back, each paced to rate/clients if rate is positive.
+     */
+    void closedLoop(double rate, int seconds, int clients) throws InterruptedException {
+        Thread[] threads = new Thread[clients];
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long period = rate > 0 ? (long) (1e9 * clients / rate) : 0;
+        for (int c = 0; c < clients; c++) {
+            Random r = new Random(c);
+            threads[c] = new Thread(() -> {
+                long next = System.nanoTime();
+                while (System.nanoTime() < end) {
+                    long t0 = System.nanoTime();
+                    operation(r);
+                    record(System.nanoTime() - t0);
+                    if (period > 0) {
+                        next += period;
+                        long wait = next - System.nanoTime();
+                        if (wait > 0) LockSupport.parkNanos(wait);
+                    }
+                }
+            }, "load-" + c);
+            threads[c].start();
+        }
+        for (Thread t : threads) t.join();
+    }
+
+    /**
+     * Prints throughput and latency percentiles for what has been recorded.
+     */
+    void report(String label, double seconds) {
+        int n = Math.min(recorded.get(), latencies.length);
+        long[] l = Arrays.copyOf(latencies, n);
+        Arrays.sort(l);
+        System.out.printf("%s: %d requests, %.0f req/s%n", label, n, n / seconds);
+        if (n == 0) return;
+        System.out.printf("  p50 %s  p90 %s  p99 %s  p99.9 %s  max %s%n", ms(l, 0.5), ms(l, 0.9), ms(l, 0.99),
+                ms(l, 0.999), ms(l, 1));
+    }
+
+    private static String ms(long[] sorted, double q) {
+        int i = (int) Math.min(sorted.length - 1, Math.ceil(q * sorted.length) - 1);
+        return String.format("%.3f ms", sorted[Math.max(0, i)] / 1e6);
+    }
+
+    /**
+     * Options: --model=open|closed, --rate (req/s; 0 = unpaced in closed loop), --seconds, --clients,
+     * --users, --years (of preloaded history), --writes (share of requests that log something), --seed,
+     * --ingest=store|pipeline (log through the store's methods, or through an {@link IngestPipeline}).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> opts = DatasetGenerator.options(args);
+        String model = opts.getOrDefault("model", "open");
+        double rate = Double.parseDouble(opts.getOrDefault("rate", "1000"));
+        int seconds = Integer.parseInt(opts.getOrDefault("seconds", "10"));
+        int clients = Integer.parseInt(opts.getOrDefault("clients", "8"));
+        DatasetGenerator.Profile p = new DatasetGenerator.Profile();
+        p.users = Integer.parseInt(opts.getOrDefault("users", "100"));
+        p.years = Integer.parseInt(opts.getOrDefault("years", "1"));
+        DatasetGenerator g = new DatasetGenerator(Long.parseLong(opts.getOrDefault("seed", "42")), p);
+
+        Path dir = Files.createTempDirectory("fitness-load");
+        InMemoryStore store = new InMemoryStore(new Database(dir.resolve("journal"), dir.resolve("workouts.json").toFile(),
+                WriteBehind.DEFAULT_MAX_LATENCY_MILLIS, WriteBehind.DEFAULT_MAX_BATCH));
+        long t0 = System.nanoTime();
+        g.populate(store);
+        System.out.printf("Preloaded %d users in %.1f s%n", p.users, (System.nanoTime() - t0) / 1e9);
+        User[] users = new User[p.users];
+        for (int u = 0; u < users.length; u++) users[u] = store.usersByEmail.get(DatasetGenerator.email(u));
+
+        IngestPipeline ingest = opts.getOrDefault("ingest", "store").equals("pipeline")
+                ? new IngestPipeline(store, IngestPipeline.DEFAULT_CAPACITY, IngestPipeline.Overflow.BLOCK) : null;
+        int maxSamples = (int) Math.min(50_000_000, rate > 0 ? rate * seconds * 2 : 50_000_000);
+        LoadDriver d = new LoadDriver(store, ingest, users, Double.parseDouble(opts.getOrDefault("writes", "0.3")),
+                p.lastDay, maxSamples);
+        long start = System.nanoTime();
+        if (model.equals("closed")) d.closedLoop(rate, seconds, clients);
+        else d.openLoop(rate, seconds, clients);
+        d.report(model + " loop, " + clients + " clients" + (ingest != null ? ", through a pipeline" : ""),
+                (System.nanoTime() - start) / 1e9);
+        if (ingest != null) ingest.close();
+        store.database.close();
+    }
+}
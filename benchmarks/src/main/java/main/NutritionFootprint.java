@@ -0,0 +1,48 @@
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the heap a {@link ListNutritionLog} and a {@link ColumnarNutritionLog} take for one user's entries:
+ * the heap in use after a full GC with the log filled, less the heap in use before, per entry. Prints the
+ * logs' own estimatedBytes() next to it. Entries are a few meals a day over the default foods.
+ * <pre>
+ * java -Xmx4g -cp target/benchmarks.jar main.NutritionFootprint --entries=1000000
+ * </pre>
+ */
+public class NutritionFootprint {
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) {
+        Map<String, String> opts = DatasetGenerator.options(args);
+        int entries = Integer.parseInt(opts.getOrDefault("entries", "1000000"));
+        List<Food> foods = Food.getDefaultFoods();
+        measure("list", new ListNutritionLog(), entries, foods);
+        measure("columnar", new ColumnarNutritionLog(), entries, foods);
+    }
+
+    private static void measure(String name, NutritionLog log, int entries, List<Food> foods) {
+        long before = usedAfterGc();
+        LocalDateTime t = LocalDateTime.of(2016, 1, 1, 7, 30);
+        for (int i = 0; i < entries; i++) {
+            Food f = foods.get(i % foods.size());
+            // four meals a day, to the second as the columnar log keeps them
+            log.add(new NutritionEntry(f.name, 100, f.kcalPer100g, t.plusSeconds(i * 21600L + i % 60)));
+        }
+        long used = usedAfterGc() - before;
+        System.out.printf("%-8s %,d entries: %,d bytes measured (%.1f/entry), %,d estimated (%.1f/entry)%n",
+                name, entries, used, (double) used / entries, log.estimatedBytes(),
+                (double) log.estimatedBytes() / entries);
+        // keep the log reachable until it has been measured
+        if (log.view().size() != entries) throw new IllegalStateException(name + " lost entries");
+    }
+
+    private static long usedAfterGc() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,114 @@
+package main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NutritionService reads for one user with 1k, 100k or 1M entries, spread evenly over ten years. The linear scan
+ * is the pattern the UI used before the day index, kept as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NutritionQueryBenchmark {
+    private static final LocalDate FIRST = LocalDate.of(2016, 1, 1);
+    private static final int DAYS = 3650;
+
+    @Param({"1000", "100000", "1000000"})
+    int entries;
+
+    @Param({"false", "true"})
+    boolean columnar;
+
+    Path dir;
+    InMemoryStore store;
+    NutritionService svc;
+    User user;
+    int next;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Benchmarks.tempDir();
+        store = Benchmarks.store(dir, columnar);
+        user = store.signIn("bench", "bench");
+        svc = new NutritionService(store);
+        for (int i = 0; i < entries; i++) {
+            LocalDateTime at = FIRST.plusDays((long) i * DAYS / entries).atTime(8 + i % 12, i % 60);
+            store.addNutrition(user.email, new NutritionEntry(i, "Egg", 50 + i % 100, 70 + i % 300, at));
+        }
+    }
+
+    @TearDown
+    public void close() throws IOException {
+        store.database.close();
+        Benchmarks.delete(dir);
+    }
+
+    private LocalDate day() {
+        next = (next + 7919) % DAYS;
+        return FIRST.plusDays(next);
+    }
+
+    @Benchmark
+    public int dailyCalories() {
+        return svc.dailyCalories(user, day());
+    }
+
+    @Benchmark
+    public long caloriesLast30Days() {
+        return svc.caloriesLastDays(user, day(), 30);
+    }
+
+    @Benchmark
+    public void listForRange7Days(Blackhole bh) {
+        LocalDate d = day();
+        for (NutritionEntry n : svc.listForRange(user, d, d.plusDays(6))) bh.consume(n.calories);
+    }
+
+    @Benchmark
+    public void listForRange365Days(Blackhole bh) {
+        LocalDate d = day();
+        for (NutritionEntry n : svc.listForRange(user, d, d.plusDays(364))) bh.consume(n.calories);
+    }
+
+    @Benchmark
+    public long listForRange7DaysColumns() {
+        LocalDate d = day();
+        return NutritionRows.kcal(svc.listForRange(user, d, d.plusDays(6)));
+    }
+
+    @Benchmark
+    public long listForRange365DaysColumns() {
+        LocalDate d = day();
+        return NutritionRows.kcal(svc.listForRange(user, d, d.plusDays(364)));
+    }
+
+    @Benchmark
+    public int dailyCaloriesLinearScan() {
+        LocalDate d = day();
+        return store.getNutrition(user.email).stream()
+                .filter(n -> n.loggedAt.toLocalDate().equals(d))
+                .mapToInt(n -> n.calories)
+                .sum();
+    }
+}
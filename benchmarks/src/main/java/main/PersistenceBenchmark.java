@@ -0,0 +1,85 @@
+package main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-state persistence at realistic sizes: exporting workouts.json, and loading a store from the legacy
+ * workouts.json or from a journal of the same users (which also carries their nutrition).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PersistenceBenchmark {
+    /* 10 users x 2 years is about 4k workouts and 30k meals; 1000 users about 400k and 3M */
+    @Param({"10", "100", "1000"})
+    int users;
+
+    Path dir;
+    File legacy;
+    Path journal;
+    Map<String, List<Workout>> workouts;
+    Database exporter;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Benchmarks.tempDir();
+        DatasetGenerator.Profile p = new DatasetGenerator.Profile();
+        p.users = users;
+        DatasetGenerator g = new DatasetGenerator(1, p);
+        legacy = dir.resolve("workouts.json").toFile();
+        g.writeLegacyWorkouts(legacy);
+        journal = dir.resolve("journal");
+        g.writeJournal(journal);
+        workouts = new LinkedHashMap<>();
+        for (int u = 0; u < users; u++) workouts.put(DatasetGenerator.email(u), g.user(u).workouts());
+        exporter = new Database(dir.resolve("unused"), dir.resolve("export.json").toFile(), 0, 1);
+    }
+
+    @TearDown
+    public void close() throws IOException {
+        exporter.close();
+        Benchmarks.delete(dir);
+    }
+
+    @Benchmark
+    public void writeWorkouts() {
+        exporter.writeWorkouts(workouts);
+    }
+
+    @Benchmark
+    public InMemoryStore loadLegacyWorkouts() {
+        // no journal, so the constructor reads workouts.json
+        InMemoryStore s = new InMemoryStore(new Database(dir.resolve("empty-journal"), legacy, 0, 1));
+        s.database.close();
+        return s;
+    }
+
+    @Benchmark
+    public InMemoryStore replayJournal() {
+        InMemoryStore s = new InMemoryStore(new Database(journal, legacy, 0, 1));
+        s.database.close();
+        return s;
+    }
+}
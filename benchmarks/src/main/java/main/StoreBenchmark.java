@@ -0,0 +1,98 @@
+package main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write throughput of the store: in-memory adds (the replay path) and journalled logging, for both nutrition
+ * layouts. A fresh store is built for every iteration so the history does not grow without bound.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StoreBenchmark {
+    private static final int MASK = 4095;
+
+    @Param({"false", "true"})
+    boolean columnar;
+
+    Path dir;
+    InMemoryStore store;
+    Workout[] workouts;
+    NutritionEntry[] entries;
+    List<NutritionEntry> entryList;
+    int next;
+
+    @Setup(Level.Trial)
+    public void data() {
+        DatasetGenerator.History h = new DatasetGenerator(1, new DatasetGenerator.Profile()).user(0);
+        workouts = new Workout[MASK + 1];
+        entries = new NutritionEntry[MASK + 1];
+        for (int i = 0; i <= MASK; i++) {
+            workouts[i] = h.workouts().get(i % h.workouts().size());
+            entries[i] = h.nutrition().get(i % h.nutrition().size());
+        }
+        entryList = List.of(entries);
+    }
+
+    @Setup(Level.Iteration)
+    public void store() throws IOException {
+        dir = Benchmarks.tempDir();
+        store = Benchmarks.store(dir, columnar);
+        store.signIn("bench", "bench");
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        store.database.close();
+        Benchmarks.delete(dir);
+    }
+
+    @Benchmark
+    public void addWorkout() {
+        store.addWorkout("bench", workouts[next++ & MASK]);
+    }
+
+    @Benchmark
+    public void addNutrition() {
+        store.addNutrition("bench", entries[next++ & MASK]);
+    }
+
+    @Benchmark
+    public void logNutrition() {
+        store.logNutrition("bench", entries[next++ & MASK]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void logNutritionFourThreads() {
+        store.logNutrition("bench", entries[ThreadLocalRandom.current().nextInt(MASK + 1)]);
+    }
+
+    @Benchmark
+    public void logBatchOf256() {
+        int from = (next += 256) & MASK & ~255;
+        store.logBatch("bench", List.of(), entryList.subList(from, from + 256));
+    }
+}
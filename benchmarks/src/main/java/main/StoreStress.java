@@ -0,0 +1,253 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A multi-threaded check of the store under concurrent logging and reading, and a measure of how its throughput
+ * scales with threads. For each thread count, every thread runs a mix of writes (a workout or a nutrition entry
+ * for a random user) and reads (a snapshot of a random user) for a while, a compaction runs now and then, and
+ * then:
+ * <ul>
+ *     <li>every snapshot a reader took must have been self-consistent (its day index covers every row) and never
+ *     smaller than one the same thread took of the same user earlier</li>
+ *     <li>every user's counts and daily totals must match what was logged</li>
+ *     <li>a store reloaded from the journal must hold the same</li>
+ * </ul>
+ * A last round mixes paths the way a server and the GUI do: half the workouts go through an {@link IngestPipeline},
+ * the rest are logged directly, and some writes edit the notes of the user's newest workout, often one the
+ * pipeline has applied but not yet persisted. Besides the checks above, every user's workouts reloaded from the
+ * journal must then match the ones in memory position by position, notes included.
+ * <p>
+ * Exits with an exception on the first violation. Throughput is printed per thread count, with the speedup over
+ * the first; it only means something on a machine with at least that many cores, which is also printed.
+ * <pre>
+ * java -cp target/benchmarks.jar main.StoreStress --threads=1,2,4,8 --users=16 --seconds=5 --reads=0.8
+ * </pre>
+ */
+public class StoreStress {
+    private static final LocalDate FIRST = LocalDate.of(2025, 1, 1);
+    private static final int DAYS = 30;
+
+    private final InMemoryStore store;
+    private final String[] emails;
+    private final double reads;
+    private final AtomicLongArray workouts, nutrition, burned, eaten;
+    /* Set for the mixed round: half the workouts go through it, and notes are edited */
+    private final IngestPipeline pipeline;
+
+    StoreStress(InMemoryStore store, int users, double reads, IngestPipeline pipeline) {
+        this.store = store;
+        this.reads = reads;
+        this.pipeline = pipeline;
+        emails = new String[users];
+        for (int u = 0; u < users; u++) emails[u] = store.signIn("stress" + u + "@example.com", "Stress " + u).email;
+        workouts = new AtomicLongArray(users);
+        nutrition = new AtomicLongArray(users);
+        burned = new AtomicLongArray(users);
+        eaten = new AtomicLongArray(users);
+    }
+
+    /**
+     * Runs the given number of threads for the given time.
+     * @return the operations done
+     */
+    long run(int threads, int seconds) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long[] ops = new long[threads];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] ts = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            ts[t] = new Thread(() -> {
+                Random r = new Random(id);
+                int[] seen = new int[emails.length * 2];
+                try {
+                    while (System.nanoTime() < end && failure.get() == null) {
+                        int u = r.nextInt(emails.length);
+                        if (r.nextDouble() < reads) read(u, seen);
+                        else write(u, r);
+                        ops[id]++;
+                        if (id == 0 && ops[id] % 50_000 == 0) store.database.compact(store);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "stress-" + t);
+            ts[t].start();
+        }
+        for (Thread t : ts) t.join();
+        if (failure.get() != null) throw new IllegalStateException("stress thread failed", failure.get());
+        long total = 0;
+        for (long n : ops) total += n;
+        return total;
+    }
+
+    private void write(int u, Random r) {
+        LocalDateTime at = FIRST.plusDays(r.nextInt(DAYS)).atTime(r.nextInt(24), r.nextInt(60));
+        int kcal = 1 + r.nextInt(800);
+        if (pipeline != null && r.nextInt(4) == 0) {
+            editNotes(u, r);
+        } else if (r.nextBoolean()) {
+            // counted before the write, so a reader never sees more than is counted
+            workouts.incrementAndGet(u);
+            burned.addAndGet(u, kcal);
+            Workout w = Workout.cardio("Run", at, "Miles", 3.0, null, 30, kcal);
+            if (pipeline != null && r.nextBoolean()) pipeline.publish(emails[u], w);
+            else store.logWorkout(emails[u], w);
+        } else {
+            nutrition.incrementAndGet(u);
+            eaten.addAndGet(u, kcal);
+            store.logNutrition(emails[u], new NutritionEntry("Egg", 50, kcal, at));
+        }
+    }
+
+    /* Edits the notes of the user's newest workout, which may still be on its way through the pipeline */
+    private void editNotes(int u, Random r) {
+        List<Workout> ws = store.snapshot(emails[u]).workouts().all();
+        if (!ws.isEmpty()) store.updateNotes(emails[u], ws.get(ws.size() - 1), "edit " + r.nextInt(1000));
+    }
+
+    private void read(int u, int[] seen) {
+        UserSnapshot s = store.snapshot(emails[u]);
+        int from = (int) FIRST.toEpochDay(), to = from + DAYS - 1;
+        int w = s.workouts().size(), n = s.nutrition().size();
+        check(s.workouts().forRange(from, to).size() == w, "workout day index misses rows", u);
+        check(s.nutrition().forRange(from, to).size() == n, "nutrition day index misses rows", u);
+        check(w >= seen[2 * u] && n >= seen[2 * u + 1], "snapshot went back in time", u);
+        check(w <= workouts.get(u) && n <= nutrition.get(u), "snapshot has rows nobody logged", u);
+        seen[2 * u] = w;
+        seen[2 * u + 1] = n;
+    }
+
+    /**
+     * Checks that every user's counts and totals in the given store match what was logged.
+     */
+    void verify(InMemoryStore s, String what) {
+        int from = (int) FIRST.toEpochDay(), to = from + DAYS - 1;
+        for (int u = 0; u < emails.length; u++) {
+            UserSnapshot snap = s.snapshot(emails[u]);
+            check(snap.workouts().size() == workouts.get(u), what + ": workout count", u);
+            check(snap.nutrition().size() == nutrition.get(u), what + ": nutrition count", u);
+            check(s.total(emails[u], DailyTotals.Metric.BURNED_KCAL, from, to) == burned.get(u), what + ": kcal burned", u);
+            check(s.total(emails[u], DailyTotals.Metric.EATEN_KCAL, from, to) == eaten.get(u), what + ": kcal eaten", u);
+        }
+    }
+
+    /**
+     * Checks that every user's workouts in the given store are the ones in {@code expected}, in the same
+     * positions and with the same notes.
+     */
+    void verifyWorkouts(UserSnapshot[] expected, InMemoryStore s, String what) {
+        for (int u = 0; u < emails.length; u++) {
+            List<Workout> want = expected[u].workouts().all(), got = s.snapshot(emails[u]).workouts().all();
+            check(got.size() == want.size(), what + ": workout count", u);
+            for (int i = 0; i < want.size(); i++) {
+                Workout a = want.get(i), b = got.get(i);
+                check(a.startEpochSec == b.startEpochSec && a.estimatedCalories == b.estimatedCalories,
+                        what + ": workout " + i + " out of place", u);
+                check(Objects.equals(a.notes, b.notes), what + ": notes of workout " + i, u);
+            }
+        }
+    }
+
+    private void check(boolean ok, String what, int u) {
+        if (!ok) throw new IllegalStateException(what + " for " + emails[u]);
+    }
+
+    /**
+     * Options: --threads (comma separated thread counts), --users, --seconds (per thread count), --reads (share
+     * of operations that read), --columnar.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> opts = DatasetGenerator.options(args);
+        int cores = Runtime.getRuntime().availableProcessors();
+        String threads = opts.getOrDefault("threads", "1,2,4,8");
+        int users = Integer.parseInt(opts.getOrDefault("users", "16"));
+        int seconds = Integer.parseInt(opts.getOrDefault("seconds", "5"));
+        double reads = Double.parseDouble(opts.getOrDefault("reads", "0.8"));
+        boolean columnar = Boolean.parseBoolean(opts.getOrDefault("columnar", "false"));
+        System.out.printf("%d cores, %d users, %.0f%% reads, %s nutrition%n", cores, users, reads * 100,
+                columnar ? "columnar" : "list");
+
+        String[] counts = threads.split(",");
+        // a first, unreported round at the largest count, so the JIT has warmed up before the first measured one
+        round(Integer.parseInt(counts[counts.length - 1].trim()), users, seconds, reads, columnar);
+        double base = 0;
+        for (String t : counts) {
+            int n = Integer.parseInt(t.trim());
+            double rate = round(n, users, seconds, reads, columnar);
+            if (base == 0) base = rate;
+            System.out.printf("%2d threads: %,.0f ops/s, %.2fx%s%n", n, rate, rate / base,
+                    n > cores ? " (more threads than cores)" : "");
+        }
+        int n = Integer.parseInt(counts[counts.length - 1].trim());
+        double rate = mixedRound(n, users, seconds, reads, columnar);
+        System.out.printf("%2d threads, pipeline and direct writes with notes edits: %,.0f ops/s, journal order ok%n",
+                n, rate);
+    }
+
+    /**
+     * Runs and checks one thread count on a new store.
+     * @return operations per second
+     */
+    private static double round(int n, int users, int seconds, double reads, boolean columnar)
+            throws IOException, InterruptedException {
+        Path dir = Benchmarks.tempDir();
+        try {
+            InMemoryStore store = Benchmarks.store(dir, columnar);
+            StoreStress stress = new StoreStress(store, users, reads, null);
+            long t0 = System.nanoTime();
+            long ops = stress.run(n, seconds);
+            double rate = ops / ((System.nanoTime() - t0) / 1e9);
+            stress.verify(store, "in memory");
+            store.database.close();
+            InMemoryStore reloaded = Benchmarks.store(dir, columnar);
+            stress.verify(reloaded, "reloaded");
+            reloaded.database.close();
+            return rate;
+        } finally {
+            Benchmarks.delete(dir);
+        }
+    }
+
+    /**
+     * Runs and checks the mixed round on a new store: writes both through a pipeline and directly, with notes
+     * edits, then checks the reloaded workouts against the ones in memory.
+     * @return operations per second
+     */
+    private static double mixedRound(int n, int users, int seconds, double reads, boolean columnar)
+            throws IOException, InterruptedException {
+        Path dir = Benchmarks.tempDir();
+        try {
+            InMemoryStore store = Benchmarks.store(dir, columnar);
+            IngestPipeline pipeline = new IngestPipeline(store, IngestPipeline.DEFAULT_CAPACITY,
+                    IngestPipeline.Overflow.BLOCK);
+            StoreStress stress = new StoreStress(store, users, reads, pipeline);
+            long t0 = System.nanoTime();
+            long ops = stress.run(n, seconds);
+            double rate = ops / ((System.nanoTime() - t0) / 1e9);
+            pipeline.close();
+            stress.verify(store, "in memory");
+            UserSnapshot[] expected = new UserSnapshot[users];
+            for (int u = 0; u < users; u++) expected[u] = store.snapshot(stress.emails[u]);
+            store.database.close();
+            InMemoryStore reloaded = Benchmarks.store(dir, columnar);
+            stress.verify(reloaded, "reloaded");
+            stress.verifyWorkouts(expected, reloaded, "reloaded");
+            reloaded.database.close();
+            return rate;
+        } finally {
+            Benchmarks.delete(dir);
+        }
+    }
+}
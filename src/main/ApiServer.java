@@ -0,0 +1,337 @@
+package main;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A headless JSON-over-HTTP front end to the services, for running the app as a server (see {@link Main}).
+ * Every request is handled on its own virtual thread when the JVM offers them, otherwise on a cached pool.
+ * Workouts and nutrition entries are logged through an {@link IngestPipeline}: a POST returns once the record
+ * is queued, and reads see it a moment later.
+ * <p>
+ * Users are identified by the {@code email} query parameter and must have signed in first. Dates are ISO
+ * ({@code 2025-01-31}); queries take either {@code date} or {@code from} and {@code to} (inclusive), at most
+ * {@link #MAX_RANGE_DAYS} days apart. Grams, kcal and workout minutes must be positive; anything malformed is
+ * answered with 400.
+ * <pre>
+ * POST /signin                      {"email": "...", "name": "..."}
+ * POST /workouts?email=             a workout, e.g. {"type": "Run", "startedAt": "2025-01-31T07:30", "durationMin": 30, ...}
+ * GET  /workouts?email=&amp;date=
+ * POST /nutrition?email=            {"item": "Egg", "grams": 50, "kcal": 70, "date": "2025-01-31"} (date is optional)
+ * GET  /nutrition?email=&amp;date=
+ * PUT  /goal?email=                 {"dailyBurnTarget": 500}
+ * GET  /summary?email=&amp;date=        kcal eaten and burned, workout minutes and steps
+ * </pre>
+ */
+public class ApiServer {
+    static final int DEFAULT_PORT = 8080;
+    static final int MAX_RANGE_DAYS = 366;
+
+    /* Thrown by handlers to answer with a 4xx status. */
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private interface Route {
+        Object handle(HttpExchange ex, Map<String, String> query) throws IOException;
+    }
+
+    private final InMemoryStore store;
+    private final AuthService authSvc;
+    private final WorkoutService workoutSvc;
+    private final NutritionService nutritionSvc;
+    private final GoalService goalSvc;
+    private final ObjectMapper json;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final IngestPipeline ingest;
+    private final Map<String, Map<String, Route>> routes = new HashMap<>();
+
+    /**
+     * Creates a server over the given store; call {@link #start()} to accept requests.
+     * @param store the store to serve
+     * @param port the port to listen on, or 0 for any free port
+     */
+    ApiServer(InMemoryStore store, int port) throws IOException {
+        this.store = store;
+        authSvc = new AuthService(store);
+        ingest = new IngestPipeline(store, IngestPipeline.DEFAULT_CAPACITY, IngestPipeline.Overflow.BLOCK);
+        workoutSvc = new WorkoutService(store, ingest);
+        nutritionSvc = new NutritionService(store, ingest);
+        goalSvc = new GoalService(store);
+        json = store.database.objectMapper;
+        executor = newExecutor();
+        server = HttpServer.create(new InetSocketAddress(port), 4096);
+        server.setExecutor(executor);
+        route("/signin", "POST", this::signIn);
+        route("/workouts", "POST", this::logWorkout);
+        route("/workouts", "GET", this::listWorkouts);
+        route("/nutrition", "POST", this::logNutrition);
+        route("/nutrition", "GET", this::listNutrition);
+        route("/goal", "PUT", this::setGoal);
+        route("/summary", "GET", this::summary);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    void start() {
+        server.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return true if requests run on virtual threads, false if on the fallback pool of platform threads
+     */
+    boolean virtualThreads() {
+        return !(executor instanceof ThreadPoolExecutor);
+    }
+
+    /**
+     * Stops accepting requests, gives the ones in flight a second to finish, then persists what they logged and
+     * flushes the journal.
+     */
+    void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ingest.close();
+    }
+
+    /* One thread per request: virtual threads if this JVM has them, else a cached pool of platform threads. */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "api-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private void route(String path, String method, Route r) {
+        routes.computeIfAbsent(path, p -> {
+            server.createContext(p, ex -> dispatch(ex, routes.get(p)));
+            return new HashMap<>();
+        }).put(method, r);
+    }
+
+    private void dispatch(HttpExchange ex, Map<String, Route> byMethod) throws IOException {
+        try (ex) {
+            int status = 200;
+            Object body;
+            try {
+                Route r = byMethod.get(ex.getRequestMethod());
+                if (r == null) throw new ApiException(405, "method not allowed");
+                body = r.handle(ex, query(ex));
+            } catch (ApiException e) {
+                status = e.status;
+                body = Map.of("error", e.getMessage());
+            } catch (JsonProcessingException | DateTimeParseException | IllegalArgumentException e) {
+                status = 400;
+                body = Map.of("error", String.valueOf(e.getMessage()));
+            } catch (RejectedExecutionException e) {
+                status = 503;
+                body = Map.of("error", "shutting down");
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                status = 500;
+                body = Map.of("error", "internal error");
+            }
+            byte[] out = json.writeValueAsBytes(body);
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            ex.sendResponseHeaders(status, out.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(out);
+            }
+        }
+    }
+
+    private Object signIn(HttpExchange ex, Map<String, String> q) throws IOException {
+        JsonNode b = body(ex);
+        String email = text(b, "email");
+        User u = authSvc.signInOrSignUp(email, b.hasNonNull("name") ? b.get("name").asText() : email);
+        return user(u);
+    }
+
+    private Object logWorkout(HttpExchange ex, Map<String, String> q) throws IOException {
+        User u = user(q);
+        Workout w;
+        try (InputStream in = ex.getRequestBody()) {
+            w = json.readValue(in, Workout.class);
+        }
+        if (w == null || w.startedAt == null || w.type == null) throw new ApiException(400, "type and startedAt are required");
+        if (w.durationMin <= 0) throw new ApiException(400, "durationMin must be positive");
+        if (w.estimatedCalories < 0 || negative(w.distanceValue) || negative(w.steps) || negative(w.sets)
+                || negative(w.reps)) {
+            throw new ApiException(400, "amounts must not be negative");
+        }
+        workoutSvc.logWorkout(u, w, store.database);
+        return w;
+    }
+
+    private Object listWorkouts(HttpExchange ex, Map<String, String> q) {
+        User u = user(q);
+        LocalDate[] r = range(q);
+        return workoutSvc.listForRange(u, r[0], r[1]);
+    }
+
+    private Object logNutrition(HttpExchange ex, Map<String, String> q) throws IOException {
+        User u = user(q);
+        JsonNode b = body(ex);
+        String item = text(b, "item");
+        int grams = positive(b, "grams");
+        int kcal = positive(b, "kcal");
+        if (b.hasNonNull("date")) nutritionSvc.logNutritionForDate(u, item, grams, kcal, LocalDate.parse(b.get("date").asText()));
+        else nutritionSvc.logNutrition(u, item, grams, kcal);
+        return Map.of("logged", true);
+    }
+
+    private Object listNutrition(HttpExchange ex, Map<String, String> q) {
+        User u = user(q);
+        LocalDate[] r = range(q);
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (NutritionEntry n : nutritionSvc.listForRange(u, r[0], r[1])) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", Long.toString(n.id));
+            m.put("at", n.loggedAt.toString());
+            m.put("item", n.itemName);
+            m.put("grams", n.grams);
+            m.put("kcal", n.calories);
+            out.add(m);
+        }
+        return out;
+    }
+
+    private Object setGoal(HttpExchange ex, Map<String, String> q) throws IOException {
+        User u = user(q);
+        JsonNode b = body(ex);
+        goalSvc.setDailyBurn(u, b.hasNonNull("dailyBurnTarget") ? b.get("dailyBurnTarget").asInt() : null);
+        return user(u);
+    }
+
+    private Object summary(HttpExchange ex, Map<String, String> q) {
+        User u = user(q);
+        LocalDate[] r = range(q);
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("from", r[0].toString());
+        m.put("to", r[1].toString());
+        m.put("kcalEaten", nutritionSvc.caloriesBetween(u, r[0], r[1]));
+        m.put("kcalBurned", workoutSvc.caloriesBurnedBetween(u, r[0], r[1]));
+        m.put("workoutMinutes", workoutSvc.minutesBetween(u, r[0], r[1]));
+        m.put("steps", workoutSvc.stepsBetween(u, r[0], r[1]));
+        m.put("dailyBurnTarget", u.goal.dailyBurnTarget);
+        return m;
+    }
+
+    private static Map<String, Object> user(User u) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("email", u.email);
+        m.put("name", u.name);
+        m.put("dailyBurnTarget", u.goal.dailyBurnTarget);
+        return m;
+    }
+
+    /* The signed-in user named by the email parameter. */
+    private User user(Map<String, String> q) {
+        String email = q.get("email");
+        if (email == null) throw new ApiException(400, "email is required");
+        User u = store.usersByEmail.get(email);
+        if (u == null) throw new ApiException(404, "unknown user " + email);
+        return u;
+    }
+
+    /* Either date, or from and to. */
+    private static LocalDate[] range(Map<String, String> q) {
+        if (q.containsKey("date")) {
+            LocalDate d = LocalDate.parse(q.get("date"));
+            return new LocalDate[]{d, d};
+        }
+        if (!q.containsKey("from") || !q.containsKey("to")) throw new ApiException(400, "date or from and to are required");
+        LocalDate from = LocalDate.parse(q.get("from")), to = LocalDate.parse(q.get("to"));
+        if (from.isAfter(to)) throw new ApiException(400, "from is after to");
+        if (to.toEpochDay() - from.toEpochDay() >= MAX_RANGE_DAYS) {
+            throw new ApiException(400, "at most " + MAX_RANGE_DAYS + " days at a time");
+        }
+        return new LocalDate[]{from, to};
+    }
+
+    private JsonNode body(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            JsonNode b = json.readTree(in);
+            if (b == null || !b.isObject()) throw new ApiException(400, "a JSON object is required");
+            return b;
+        }
+    }
+
+    private static String text(JsonNode b, String field) {
+        if (!b.hasNonNull(field)) throw new ApiException(400, field + " is required");
+        return b.get(field).asText();
+    }
+
+    /* A required whole number above zero; a missing field or one that is not a number is rejected too. */
+    private static int positive(JsonNode b, String field) {
+        JsonNode v = b.get(field);
+        if (v == null || !v.isIntegralNumber() || !v.canConvertToInt() || v.asInt() <= 0) {
+            throw new ApiException(400, field + " must be a positive whole number");
+        }
+        return v.asInt();
+    }
+
+    private static boolean negative(Number n) {
+        return n != null && n.doubleValue() < 0;
+    }
+
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> q = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) return q;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            q.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return q;
+    }
+}
@@ -1,15 +1,24 @@
-package main;
-
-/**
- * The authentication service for the application.
- */
-public class AuthService { 
-    private final InMemoryStore store; 
-    AuthService(InMemoryStore s){
-        store=s;
-    } 
-    
-    User signInOrSignUp(String e,String n) {
-        return store.getOrCreateUser(e,n);
-    } 
+package main;
+
+/**
+ * The authentication service for the application.
+ */
+public class AuthService { 
+    private static final Metrics.Operation SIGN_IN = Metrics.operation("AuthService.signIn");
+    private final InMemoryStore store; 
+    AuthService(InMemoryStore s){
+        store=s;
+    } 
+    
+    /**
+     * Returns the user with the given email, creating (and persisting) them on first sign in.
+     */
+    User signInOrSignUp(String e,String n) {
+        long t0 = System.nanoTime();
+        try {
+            return store.signIn(e,n);
+        } finally {
+            SIGN_IN.end(t0);
+        }
+    } 
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Hands what a publisher sends to a consumer in batches, on an executor of the consumer's choosing (e.g.
+ * {@code SwingUtilities::invokeLater}). Everything that arrives while the consumer is busy, or while its batch
+ * waits for the executor, goes out together in the next call, so a burst of a thousand changes costs the consumer
+ * one call rather than a thousand.
+ * <p>
+ * Demand is bounded: at most maxItems items are requested ahead of what the consumer has been handed. If the
+ * publisher has to drop items for this subscriber anyway, {@link #missed()} turns the next batch into a single
+ * onMissed call, after which the consumer should reload rather than apply deltas.
+ * @param <T> the kind of element in each item
+ */
+public class BatchingSubscriber<T> implements Flow.Subscriber<List<T>> {
+    private final Executor executor;
+    private final int maxItems;
+    private final Consumer<List<T>> onBatch;
+    private final Runnable onMissed;
+
+    private final Object lock = new Object();
+    private List<T> pending = new ArrayList<>();
+    private int received;
+    private boolean lost;
+    private boolean scheduled;
+    private volatile Flow.Subscription subscription;
+
+    /**
+     * @param executor runs the consumer
+     * @param maxItems how many items may be requested but not yet delivered
+     * @param onBatch receives each batch, in order
+     * @param onMissed called instead of onBatch when items were dropped
+     */
+    BatchingSubscriber(Executor executor, int maxItems, Consumer<List<T>> onBatch, Runnable onMissed) {
+        this.executor = executor;
+        this.maxItems = maxItems;
+        this.onBatch = onBatch;
+        this.onMissed = onMissed;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription s) {
+        subscription = s;
+        s.request(maxItems);
+    }
+
+    @Override
+    public void onNext(List<T> item) {
+        synchronized (lock) {
+            pending.addAll(item);
+            received++;
+        }
+        schedule();
+    }
+
+    /**
+     * Records that the publisher dropped an item for this subscriber.
+     */
+    void missed() {
+        synchronized (lock) {
+            lost = true;
+        }
+        schedule();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        t.printStackTrace();
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    /**
+     * Stops receiving; batches already scheduled are still delivered.
+     */
+    void cancel() {
+        Flow.Subscription s = subscription;
+        if (s != null) s.cancel();
+    }
+
+    private void schedule() {
+        synchronized (lock) {
+            if (scheduled) return;
+            scheduled = true;
+        }
+        executor.execute(this::deliver);
+    }
+
+    private void deliver() {
+        List<T> batch;
+        int items;
+        boolean dropped;
+        synchronized (lock) {
+            batch = pending;
+            pending = new ArrayList<>();
+            items = received;
+            received = 0;
+            dropped = lost;
+            lost = false;
+            scheduled = false;
+        }
+        try {
+            if (dropped) onMissed.run();
+            else if (!batch.isEmpty()) onBatch.accept(batch);
+        } finally {
+            if (items > 0) subscription.request(items);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package main;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * Keeps nutrition entries in growable primitive columns instead of one object graph per entry: the log time
+ * in epoch seconds, grams, kcal, the id and the {@link Symbols} id of the item name. Entries handed out are views
+ * built on access; nothing per entry is kept on the heap besides the column slots. The lists handed out are also
+ * {@link NutritionRows}, so readers that only need some fields can read the columns without building entries.
+ * <p>
+ * Footprint per entry is about 32 bytes (8 time + 4 grams + 4 kcal + 4 name + 8 id + 4 day-index row),
+ * against about 120 bytes for a {@link ListNutritionLog} (entry, LocalDateTime/LocalDate/LocalTime and
+ * the list and index slots), not counting item name strings. Log times are kept to the second.
+ * <p>
+ * Rows are never rewritten, so a view is just the current column arrays and a row count.
+ * <p>
+ * An item name the {@link Symbols} table has no room for is kept in this log's own list of names, and its row
+ * holds that list's position as a negative id.
+ */
+public class ColumnarNutritionLog implements NutritionLog {
+    static final int BYTES_PER_ENTRY = 32;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] loggedAt = new long[INITIAL_CAPACITY];
+    private int[] grams = new int[INITIAL_CAPACITY];
+    private int[] calories = new int[INITIAL_CAPACITY];
+    private int[] names = new int[INITIAL_CAPACITY];
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int size;
+    /* Item names Symbols did not take; row k's name is others[-names[k] - 1] when names[k] is negative */
+    private String[] others = new String[0];
+    private int otherCount;
+    private final DayRows days = new DayRows();
+    private volatile Columns current = new Columns(loggedAt, grams, calories, names, ids, 0, days, others);
+
+    @Override public void add(NutritionEntry n) {
+        append(n);
+        publish();
+    }
+
+    @Override public void addAll(Collection<NutritionEntry> ns) {
+        for (NutritionEntry n : ns) append(n);
+        publish();
+    }
+
+    @Override public HistoryView<NutritionEntry> view() {
+        return current;
+    }
+
+    @Override public long estimatedBytes() {
+        // columns are sized for capacity, not size
+        return (long) loggedAt.length * (BYTES_PER_ENTRY - 4) + (long) current.size * 4;
+    }
+
+    /* Fills the next row; readers do not see it until publish(). */
+    private void append(NutritionEntry n) {
+        int row = size;
+        if (row == loggedAt.length) grow();
+        loggedAt[row] = n.loggedAt.toEpochSecond(ZoneOffset.UTC);
+        grams[row] = n.grams;
+        calories[row] = n.calories;
+        names[row] = nameId(n.itemName);
+        ids[row] = n.id;
+        days.add((int) Math.floorDiv(loggedAt[row], 86400L), row);
+        size++;
+    }
+
+    /* The Symbols id of the name, or, if Symbols is full, a negative id into others */
+    private int nameId(String name) {
+        int id = Symbols.id(name);
+        if (id >= 0) return id;
+        // earlier views keep the old array, whose slots are never rewritten
+        if (otherCount == others.length) others = Arrays.copyOf(others, Math.max(4, otherCount * 2));
+        others[otherCount++] = name;
+        return -otherCount;
+    }
+
+    private void publish() {
+        current = new Columns(loggedAt, grams, calories, names, ids, size, days, others);
+    }
+
+    private void grow() {
+        int c = loggedAt.length * 2;
+        loggedAt = Arrays.copyOf(loggedAt, c);
+        grams = Arrays.copyOf(grams, c);
+        calories = Arrays.copyOf(calories, c);
+        names = Arrays.copyOf(names, c);
+        ids = Arrays.copyOf(ids, c);
+    }
+
+    /* The first size rows of the columns. */
+    private static final class Columns implements HistoryView<NutritionEntry> {
+        private final long[] loggedAt;
+        private final int[] grams;
+        private final int[] calories;
+        private final int[] names;
+        private final long[] ids;
+        private final int size;
+        private final DayRows days;
+        private final String[] others;
+
+        Columns(long[] loggedAt, int[] grams, int[] calories, int[] names, long[] ids, int size, DayRows days,
+                String[] others) {
+            this.loggedAt = loggedAt;
+            this.grams = grams;
+            this.calories = calories;
+            this.names = names;
+            this.ids = ids;
+            this.size = size;
+            this.days = days;
+            this.others = others;
+        }
+
+        @Override public int size() {
+            return size;
+        }
+
+        @Override public List<NutritionEntry> all() {
+            return new Rows(null, size);
+        }
+
+        @Override public List<NutritionEntry> forDay(int day) {
+            return rows(days.rows(day, size));
+        }
+
+        @Override public List<NutritionEntry> forRange(int from, int to) {
+            return rows(days.rows(from, to, size));
+        }
+
+        @Override public NavigableSet<Integer> days() {
+            return days.days(size);
+        }
+
+        /* A read-only view over the given rows. */
+        private List<NutritionEntry> rows(int[] rows) {
+            return new Rows(rows, rows.length);
+        }
+
+        /* The given rows (all the first n if null); get() builds an entry, the NutritionRows reads do not. */
+        private final class Rows extends AbstractList<NutritionEntry> implements NutritionRows {
+            private final int[] rows;
+            private final int n;
+
+            Rows(int[] rows, int n) {
+                this.rows = rows;
+                this.n = n;
+            }
+
+            private int at(int i) {
+                if (i >= n) throw new IndexOutOfBoundsException(i);
+                return rows == null ? i : rows[i];
+            }
+
+            @Override public NutritionEntry get(int i) {
+                return entry(at(i));
+            }
+            @Override public int size() {
+                return n;
+            }
+            @Override public long epochSec(int i) {
+                return loggedAt[at(i)];
+            }
+            @Override public int grams(int i) {
+                return grams[at(i)];
+            }
+            @Override public int kcal(int i) {
+                return calories[at(i)];
+            }
+            @Override public String item(int i) {
+                return name(at(i));
+            }
+        }
+
+        private NutritionEntry entry(int row) {
+            return new NutritionEntry(ids[row], name(row), grams[row], calories[row],
+                    LocalDateTime.ofEpochSecond(loggedAt[row], 0, ZoneOffset.UTC));
+        }
+
+        private String name(int row) {
+            int id = names[row];
+            return id >= 0 ? Symbols.name(id) : others[-id - 1];
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package main;
+
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Running per-day totals for one user (kcal eaten, kcal burned, workout minutes, steps), kept in Fenwick trees
+ * indexed by epoch day. Adding to a day and summing any range of days are both O(log n) in the number of days
+ * covered, independent of how many entries were logged.
+ * <p>
+ * Sums are read optimistically and only retried under a read lock if a write overlapped, so readers do not
+ * block the writer.
+ */
+public class DailyTotals {
+    /**
+     * The quantities that are totalled per day.
+     */
+    enum Metric { EATEN_KCAL, BURNED_KCAL, WORKOUT_MINUTES, STEPS }
+
+    private static final int METRICS = Metric.values().length;
+    private static final int INITIAL_DAYS = 64;
+
+    private int base;          // epoch day stored at position 1
+    private int capacity;      // days covered, starting at base
+    private long[][] daily;    // raw per-day values, kept so the trees can be rebuilt when the range grows
+    private long[][] tree;     // Fenwick trees, 1-based
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Adds a workout's calories, minutes and steps to its start day.
+     */
+    void addWorkout(Workout w) {
+        long stamp = lock.writeLock();
+        try {
+            addUnlocked(w);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds a nutrition entry's calories to the day it was logged.
+     */
+    void addNutrition(NutritionEntry n) {
+        add(n.day(), Metric.EATEN_KCAL, n.calories);
+    }
+
+    /**
+     * Adds a batch of workouts and nutrition entries under a single lock acquisition.
+     */
+    void addAll(Collection<Workout> workouts, Collection<NutritionEntry> nutrition) {
+        long stamp = lock.writeLock();
+        try {
+            for (Workout w : workouts) addUnlocked(w);
+            for (NutritionEntry n : nutrition) addUnlocked(n.day(), Metric.EATEN_KCAL, n.calories);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds a value to one day's total.
+     * @param day the epoch day
+     * @param m the metric
+     * @param delta the amount to add
+     */
+    void add(int day, Metric m, long delta) {
+        long stamp = lock.writeLock();
+        try {
+            addUnlocked(day, m, delta);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void addUnlocked(Workout w) {
+        addUnlocked(w.startDay, Metric.BURNED_KCAL, w.estimatedCalories);
+        addUnlocked(w.startDay, Metric.WORKOUT_MINUTES, w.durationMin);
+        if (w.steps != null) addUnlocked(w.startDay, Metric.STEPS, w.steps);
+    }
+
+    private void addUnlocked(int day, Metric m, long delta) {
+        ensureCovers(day);
+        int i = day - base + 1;
+        daily[m.ordinal()][i] += delta;
+        long[] t = tree[m.ordinal()];
+        for (; i <= capacity; i += i & -i) t[i] += delta;
+    }
+
+    /**
+     * @param m the metric
+     * @param from the first epoch day (inclusive)
+     * @param to the last epoch day (inclusive)
+     * @return the total of the metric over the given days
+     */
+    long sum(Metric m, int from, int to) {
+        if (from > to) return 0;
+        long stamp = lock.tryOptimisticRead();
+        long s = sumUnlocked(m, from, to);
+        if (lock.validate(stamp)) return s;
+        stamp = lock.readLock();
+        try {
+            return sumUnlocked(m, from, to);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /* May see a half-finished write; the caller validates. Never indexes out of bounds, even then. */
+    private long sumUnlocked(Metric m, int from, int to) {
+        long[][] trees = tree;
+        if (trees == null) return 0;
+        long[] t = trees[m.ordinal()];
+        int b = base;
+        return prefix(t, to - b + 1) - prefix(t, from - b);
+    }
+
+    /* Sum of the first i positions of the tree. */
+    private static long prefix(long[] t, int i) {
+        i = Math.min(i, t.length - 1);
+        long s = 0;
+        for (; i > 0; i -= i & -i) s += t[i];
+        return s;
+    }
+
+    /* Grows (and re-bases) the arrays so the given day has a slot, rebuilding the trees in O(n). */
+    private void ensureCovers(int day) {
+        if (tree == null) {
+            base = day;
+            capacity = INITIAL_DAYS;
+            daily = new long[METRICS][capacity + 1];
+            tree = new long[METRICS][capacity + 1];
+            return;
+        }
+        if (day >= base && day < base + capacity) return;
+        int lo = Math.min(base, day), hi = Math.max(base + capacity - 1, day);
+        int newCapacity = capacity;
+        while (newCapacity < hi - lo + 1) newCapacity *= 2;
+        // leave room on the side we grew towards so the next out-of-range day is cheap too
+        int newBase = day < base ? hi - newCapacity + 1 : lo;
+        int shift = base - newBase;
+        long[][] newDaily = new long[METRICS][newCapacity + 1];
+        long[][] newTree = new long[METRICS][newCapacity + 1];
+        for (int m = 0; m < METRICS; m++) {
+            System.arraycopy(daily[m], 1, newDaily[m], 1 + shift, capacity);
+            long[] t = newTree[m];
+            System.arraycopy(newDaily[m], 1, t, 1, newCapacity);
+            for (int i = 1; i <= newCapacity; i++) {
+                int parent = i + (i & -i);
+                if (parent <= newCapacity) t[parent] += t[i];
+            }
+        }
+        base = newBase;
+        capacity = newCapacity;
+        daily = newDaily;
+        tree = newTree;
+    }
+}
@@ -1,34 +1,262 @@
-package main;
-
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import com.fasterxml.jackson.annotation.PropertyAccessor;
-import com.fasterxml.jackson.core.exc.StreamWriteException;
-import com.fasterxml.jackson.databind.DatabindException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import java.io.File;
-import java.io.IOException;
-import java.util.List;
-import java.util.Map;
-
-public class Database {
-    ObjectMapper objectMapper = new ObjectMapper();
-
-    Database() {
-        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-    }
-
-
-
-    void writeWorkouts (Map<String, List<Workout>> workouts) {
-        try {
-            objectMapper.writeValue(new File("workouts.json"), workouts);
-        } catch (StreamWriteException e) {
-            throw new RuntimeException(e);
-        } catch (DatabindException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
-}
+package main;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.exc.StreamWriteException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists the store. Every change is appended to a {@link Journal}; the whole state is only rewritten
+ * when the journal is compacted into a snapshot. The legacy workouts.json is read on startup until the
+ * first snapshot exists. Writes happen behind the caller's back on the {@link WriteBehind} thread, so
+ * call {@link #flush()} before exiting.
+ */
+public class Database {
+    static final String WORKOUTS_FILE = "workouts.json";
+    static final Path JOURNAL_DIR = Path.of("journal");
+    static final long COMPACT_EVERY = 5000;
+    private static final Metrics.Operation WRITE_WORKOUTS = Metrics.operation("Database.writeWorkouts");
+    private static final Metrics.Operation COMPACT = Metrics.operation("Database.compact");
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    final File workoutsFile;
+    final Journal journal;
+    final WriteBehind writer;
+    private final AtomicLong appendedSinceSnapshot = new AtomicLong();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    Database() {
+        this(JOURNAL_DIR);
+    }
+
+    Database(Path journalDir) {
+        this(journalDir, WriteBehind.DEFAULT_MAX_LATENCY_MILLIS, WriteBehind.DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * @param journalDir where the journal lives
+     * @param maxLatencyMillis the longest a queued write waits to be coalesced with others
+     * @param maxBatch the most records written in one go
+     */
+    Database(Path journalDir, long maxLatencyMillis, int maxBatch) {
+        this(journalDir, new File(WORKOUTS_FILE), maxLatencyMillis, maxBatch);
+    }
+
+    /**
+     * @param journalDir where the journal lives
+     * @param workoutsFile the legacy workouts.json to read on first start (and to export to)
+     * @param maxLatencyMillis the longest a queued write waits to be coalesced with others
+     * @param maxBatch the most records written in one go
+     */
+    Database(Path journalDir, File workoutsFile, long maxLatencyMillis, int maxBatch) {
+        this.workoutsFile = workoutsFile;
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        journal = new Journal(journalDir, objectMapper);
+        writer = new WriteBehind(journal, maxLatencyMillis, maxBatch);
+    }
+
+    /**
+     * Writes every user's workouts to workouts.json in one go. Kept as an export; the app itself
+     * persists through the journal.
+     */
+    void writeWorkouts (Map<String, List<Workout>> workouts) {
+        long t0 = System.nanoTime();
+        try {
+            objectMapper.writeValue(workoutsFile, workouts);
+        } catch (StreamWriteException e) {
+            throw new RuntimeException(e);
+        } catch (DatabindException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            WRITE_WORKOUTS.end(t0);
+        }
+    }
+
+    /**
+     * Appends a single workout to the journal.
+     * @param email the owner of the workout
+     * @param w the workout
+     */
+    void appendWorkout(String email, Workout w) {
+        append(JournalRecord.workout(email, w));
+    }
+
+    /**
+     * Appends an edit of a workout's notes to the journal.
+     * @param email the owner of the workout
+     * @param index the workout's position in the user's list
+     * @param notes the new notes
+     */
+    void appendNotes(String email, int index, String notes) {
+        append(JournalRecord.notes(email, index, notes));
+    }
+
+    /**
+     * Appends a single nutrition entry to the journal.
+     * @param email the owner of the entry
+     * @param n the entry
+     */
+    void appendNutrition(String email, NutritionEntry n) {
+        append(JournalRecord.nutrition(email, n));
+    }
+
+    /**
+     * Appends a user's current name and goal to the journal. Called whenever either changes.
+     * @param u the user
+     */
+    void appendUser(User u) {
+        append(JournalRecord.user(u));
+    }
+
+    /**
+     * Encodes the given records and queues them as one block, so they reach the disk in a single write.
+     * @param records the records, in order
+     */
+    void appendBatch(List<JournalRecord> records) {
+        if (records.isEmpty()) return;
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(records.size() * 160);
+        try {
+            journal.encode(records, buf);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        String user = records.get(0).email;
+        for (JournalRecord r : records) {
+            if (!Objects.equals(r.email, user)) {
+                user = null;
+                break;
+            }
+        }
+        writer.enqueue(buf.toByteArray(), records.size(), user);
+        appendedSinceSnapshot.addAndGet(records.size());
+    }
+
+    /**
+     * Rebuilds the store: legacy workouts.json (only if no snapshot has been taken yet), then the
+     * latest snapshot and the journal segments written after it.
+     * @param store the store to populate
+     */
+    void load(InMemoryStore store) {
+        try {
+            if (!journal.hasSnapshot()) {
+                for (Map.Entry<String, List<Workout>> e : readLegacyWorkouts().entrySet()) {
+                    for (Workout w : e.getValue()) store.addWorkout(e.getKey(), w);
+                }
+            }
+            journal.replay(store::apply);
+            appendedSinceSnapshot.set(journal.recordsSinceSnapshot());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the size of workouts.json plus every journal file
+     */
+    long bytesOnDisk() {
+        try {
+            return workoutsFile.length() + journal.bytesOnDisk();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return workoutsFile.length();
+        }
+    }
+
+    /**
+     * Folds the journal into a fresh snapshot once enough records have piled up, so replay time on
+     * startup stays bounded.
+     * @param store the store whose current state becomes the snapshot
+     */
+    void compactIfDue(InMemoryStore store) {
+        if (appendedSinceSnapshot.get() >= COMPACT_EVERY && compacting.compareAndSet(false, true)) {
+            try {
+                compact(store);
+            } finally {
+                compacting.set(false);
+            }
+        }
+    }
+
+    /**
+     * Captures the store's whole state and queues it as a snapshot; the writer thread then drops the
+     * journal segments it covers.
+     * @param store the store to snapshot
+     */
+    void compact(InMemoryStore store) {
+        // Nothing can be logged while the state is captured, so the snapshot lands exactly between two records.
+        // Capturing only copies the users and takes each history's immutable snapshot, so logging waits O(users);
+        // the records themselves are built on the writer thread.
+        long t0 = System.nanoTime();
+        store.runExclusive(() -> {
+            List<JournalRecord> users = new ArrayList<>();
+            for (User u : store.usersByEmail.values()) users.add(JournalRecord.user(u));
+            Map<String, UserSnapshot> histories = new HashMap<>();
+            for (Map.Entry<String, UserHistory> e : store.historyByEmail.entrySet()) {
+                histories.put(e.getKey(), e.getValue().snapshot());
+            }
+            writer.enqueueSnapshot(() -> {
+                List<JournalRecord> records = new ArrayList<>(users);
+                for (Map.Entry<String, UserSnapshot> e : histories.entrySet()) {
+                    for (NutritionEntry n : e.getValue().nutrition().all()) records.add(JournalRecord.nutrition(e.getKey(), n));
+                    for (Workout w : e.getValue().workouts().all()) records.add(JournalRecord.workout(e.getKey(), w));
+                }
+                return records;
+            });
+            appendedSinceSnapshot.set(0);
+        });
+        COMPACT.end(t0);
+    }
+
+    /**
+     * Blocks until every queued write is on disk.
+     * @throws java.io.UncheckedIOException if they could not be written (they are kept and retried)
+     */
+    void flush() {
+        writer.flush();
+    }
+
+    /**
+     * Flushes and stops the writer thread. The database cannot be written to afterwards.
+     * @throws java.io.UncheckedIOException if queued writes could not be written and were given up
+     */
+    void close() {
+        writer.close();
+    }
+
+    private void append(JournalRecord r) {
+        try {
+            writer.enqueue(journal.encode(r), r.email);
+            appendedSinceSnapshot.incrementAndGet();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Map<String, List<Workout>> readLegacyWorkouts() {
+        try {
+            return objectMapper.readValue(workoutsFile, new TypeReference<HashMap<String, List<Workout>>>() {});
+        } catch (FileNotFoundException e) {
+            return new HashMap<>();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new HashMap<>();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Row numbers grouped by epoch day, for an append-only log. There is one writer at a time (the caller holds the
+ * user's lock); readers never lock. Rows are appended in increasing order, so a reader holding a snapshot of size
+ * n sees exactly the rows below n and ignores anything appended after its snapshot was taken.
+ */
+public class DayRows {
+    private static final class Bucket {
+        volatile int[] rows = new int[4];
+        volatile int count;
+    }
+
+    private final ConcurrentSkipListMap<Integer, Bucket> days = new ConcurrentSkipListMap<>();
+
+    /**
+     * Records that the given row was logged on the given day. Only one thread may call this at a time.
+     * @param day the epoch day
+     * @param row the row number, greater than any row added before
+     */
+    void add(int day, int row) {
+        Bucket b = days.get(day);
+        if (b == null) {
+            b = new Bucket();
+            days.put(day, b);
+        }
+        int c = b.count;
+        int[] r = b.rows;
+        if (c == r.length) {
+            r = Arrays.copyOf(r, c * 2);
+            r[c] = row;
+            b.rows = r;
+        } else {
+            r[c] = row;
+        }
+        b.count = c + 1; // publishes the row to readers
+    }
+
+    /**
+     * @param day the epoch day
+     * @param limit the snapshot size; rows at or above it are ignored
+     * @return the rows logged on that day, in log order
+     */
+    int[] rows(int day, int limit) {
+        Bucket b = days.get(day);
+        return b == null ? new int[0] : visible(b, limit);
+    }
+
+    /**
+     * @param from the first epoch day (inclusive)
+     * @param to the last epoch day (inclusive)
+     * @param limit the snapshot size; rows at or above it are ignored
+     * @return the rows logged between the two days, ordered by day and then by log order
+     */
+    int[] rows(int from, int to, int limit) {
+        if (from > to) return new int[0];
+        int[] out = new int[16];
+        int n = 0;
+        for (Bucket b : days.subMap(from, true, to, true).values()) {
+            int[] r = visible(b, limit);
+            if (n + r.length > out.length) out = Arrays.copyOf(out, Math.max(out.length * 2, n + r.length));
+            System.arraycopy(r, 0, out, n, r.length);
+            n += r.length;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * @param limit the snapshot size
+     * @return the days with at least one row below the limit, ascending
+     */
+    NavigableSet<Integer> days(int limit) {
+        TreeSet<Integer> out = new TreeSet<>();
+        days.forEach((day, b) -> {
+            if (b.count > 0 && b.rows[0] < limit) out.add(day);
+        });
+        return Collections.unmodifiableNavigableSet(out);
+    }
+
+    private static int[] visible(Bucket b, int limit) {
+        int c = b.count;      // read count before rows: rows is then at least as new
+        int[] r = b.rows;
+        int k = c;
+        while (k > 0 && r[k - 1] >= limit) k--;
+        return Arrays.copyOf(r, k);
+    }
+}
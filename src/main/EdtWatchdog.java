@@ -0,0 +1,139 @@
+package main;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watches the Swing event dispatch thread for stalls. Installed in front of the system event queue, it times
+ * every event it dispatches; a background thread checks on the event being dispatched and, once it has run
+ * past the threshold, logs the EDT's stack so we can see what it is stuck in. The watchdog also posts a
+ * heartbeat every second to measure how long events wait in the queue before they run.
+ * <p>
+ * Everything is recorded in {@link Metrics}: "EDT.dispatch" (every event), "EDT.stall" (events over the
+ * threshold), "EDT.latency" (heartbeat queueing delay) and the "edt.stalls" counter.
+ * <p>
+ * A modal dialog opened by a handler dispatches events from inside that handler. The time the EDT spends
+ * waiting for events there is not a stall, so the clock stops while it waits and the handler is watched again
+ * from when its dialog closes; its total duration is not recorded.
+ */
+public class EdtWatchdog extends EventQueue {
+    static final long DEFAULT_THRESHOLD_MILLIS = 200;
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final Metrics.Operation DISPATCH = Metrics.operation("EDT.dispatch");
+    private static final Metrics.Operation STALL = Metrics.operation("EDT.stall");
+    private static final Metrics.Operation LATENCY = Metrics.operation("EDT.latency");
+    private static final LongAdder STALLS = Metrics.counter("edt.stalls");
+    private static final System.Logger log = System.getLogger(EdtWatchdog.class.getName());
+
+    final long thresholdNanos;
+
+    /* Written by the EDT, read by the watchdog thread */
+    private volatile Thread edt;
+    private volatile long dispatchStart;
+    private volatile AWTEvent current;
+    private volatile boolean heartbeatPending;
+
+    /* Only touched on the EDT */
+    private int depth;
+    private long dispatched;
+
+    private EdtWatchdog(long thresholdMillis) {
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * Puts a watchdog in front of the system event queue and starts its watching thread.
+     * @param thresholdMillis how long one event may run before it counts as a stall
+     * @return the installed watchdog
+     */
+    static EdtWatchdog install(long thresholdMillis) {
+        EdtWatchdog q = new EdtWatchdog(thresholdMillis);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(q);
+        Thread t = new Thread(q::watch, "edt-watchdog");
+        t.setDaemon(true);
+        t.start();
+        return q;
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent e) {
+        long t0 = System.nanoTime();
+        long id = ++dispatched;
+        AWTEvent outer = current;
+        edt = Thread.currentThread();
+        current = e;
+        dispatchStart = t0;
+        depth++;
+        try {
+            super.dispatchEvent(e);
+        } finally {
+            depth--;
+            long now = System.nanoTime();
+            // if other events ran inside this one (a modal dialog), its duration means nothing
+            if (dispatched == id) finished(now - t0);
+            current = outer;
+            dispatchStart = depth > 0 ? now : 0;
+        }
+    }
+
+    @Override
+    public AWTEvent getNextEvent() throws InterruptedException {
+        // the EDT (or a modal dialog's loop on it) is idle until the next event arrives
+        dispatchStart = 0;
+        return super.getNextEvent();
+    }
+
+    private void finished(long nanos) {
+        DISPATCH.histogram.record(nanos);
+        if (nanos > thresholdNanos) {
+            STALL.histogram.record(nanos);
+            STALLS.increment();
+        }
+    }
+
+    /* The watchdog thread: reports each stall once, while it is still going on, and posts heartbeats. */
+    private void watch() {
+        long period = Math.max(TimeUnit.MILLISECONDS.toNanos(10), thresholdNanos / 4);
+        long reported = 0;
+        long nextHeartbeat = System.nanoTime();
+        while (true) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(period);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            long start = dispatchStart;
+            if (start != 0 && start != reported && now - start > thresholdNanos) {
+                reported = start;
+                report(start, now - start);
+            }
+            if (now >= nextHeartbeat && !heartbeatPending) {
+                nextHeartbeat = now + HEARTBEAT_NANOS;
+                heartbeatPending = true;
+                long posted = now;
+                EventQueue.invokeLater(() -> {
+                    LATENCY.end(posted);
+                    heartbeatPending = false;
+                });
+            }
+        }
+    }
+
+    private void report(long start, long nanos) {
+        Thread t = edt;
+        AWTEvent e = current;
+        if (t == null) return;
+        StackTraceElement[] stack = t.getStackTrace();
+        // the event finished while the stack was taken, so the stack belongs to something else
+        if (dispatchStart != start) return;
+        StringBuilder sb = new StringBuilder();
+        sb.append("Event dispatch thread stalled for ").append(TimeUnit.NANOSECONDS.toMillis(nanos))
+                .append(" ms handling ").append(e).append('\n');
+        for (StackTraceElement f : stack) sb.append("\tat ").append(f).append('\n');
+        log.log(System.Logger.Level.WARNING, sb.toString());
+    }
+}
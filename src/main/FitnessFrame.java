@@ -6,7 +6,12 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.*;
@@ -16,27 +21,17 @@ import javax.swing.table.*;
  * This class is responsible for the user interface of the application. It also contains most of the logic related to user actions.
  */
 public class FitnessFrame extends JFrame {
-    static {
-        try {
-            for (UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
-                if ("Nimbus".equals(info.getName())) {
-                    //setting the look and feel to Nimbus: @https://docs.oracle.com/javase/tutorial/uiswing/lookandfeel/nimbus.html
-                    UIManager.setLookAndFeel(info.getClassName());
-                    break;
-                }
-            }
-        } catch (Exception ignore) {}
-    }
+    private static final Metrics.Operation OPEN = Metrics.operation("FitnessFrame.open");
 
     final InMemoryStore store;
     final AuthService auth;
     final WorkoutService workoutSvc;
     final NutritionService nutritionSvc;
-    final GoalService goalSvc = new GoalService();
+    final GoalService goalSvc;
 
     User currentUser;
 
-    Database database = new Database();
+    final Database database;
     Pedometer pedometer = new Pedometer();
 
     // Header
@@ -51,7 +46,8 @@ public class FitnessFrame extends JFrame {
     JSpinner caloriesSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 5000, 10));
     JButton addFoodBtn = new RoundedButton("Add Food", pedometer);
     JLabel foodSavedLbl = new JLabel(" ");
-    DefaultTableModel todayNutritionModel = new DefaultTableModel(new Object[]{"Time", "Food", "Grams", "Calories"}, 0);
+    ListTableModel<NutritionEntry> todayNutritionModel = new ListTableModel<>((ns, r, c) -> nutritionCell(ns, r, c + 1),
+            FitnessFrame::sameEntry, "Time", "Food", "Grams", "Calories");
     JTable todayNutritionTable = new JTable(todayNutritionModel);
 
 
@@ -86,8 +82,8 @@ public class FitnessFrame extends JFrame {
     // Saved Workouts (tab 3)
     DefaultListModel<LocalDate> daysListModel = new DefaultListModel<>();
     JList<LocalDate> daysList = new JList<>(daysListModel);
-    DefaultTableModel savedWorkoutsModel = new DefaultTableModel(
-            new Object[]{"Time", "Type", "Body Part / Detail", "Minutes", "Calories"}, 0);
+    ListTableModel<Workout> savedWorkoutsModel = new ListTableModel<>((ws, r, c) -> workoutCell(ws.get(r), c + 1),
+            (a, b) -> a == b, "Time", "Type", "Body Part / Detail", "Minutes", "Calories");
     JTable savedWorkoutsTable = new JTable(savedWorkoutsModel);
     JTextArea savedWorkoutDetail = new JTextArea(8, 40);
     JTextArea workoutNotesArea = new JTextArea(4, 40);
@@ -106,8 +102,8 @@ public class FitnessFrame extends JFrame {
     JButton refreshProgressBtn = new RoundedButton("Refresh Progress", pedometer);
 
     // Weekly nutrition list
-    DefaultTableModel weekNutritionModel = new DefaultTableModel(
-            new Object[]{"Date", "Time", "Food", "Grams", "Calories"}, 0);
+    ListTableModel<NutritionEntry> weekNutritionModel = new ListTableModel<>(FitnessFrame::nutritionCell,
+            FitnessFrame::sameEntry, "Date", "Time", "Food", "Grams", "Calories");
     JTable weekNutritionTable = new JTable(weekNutritionModel);
     JLabel weekRangeLbl = new JLabel("This week: -");
 
@@ -126,13 +122,31 @@ public class FitnessFrame extends JFrame {
     LocalDate currentDay = LocalDate.now();
     JLabel currentDayLbl = new JLabel();
     JButton nextDayBtn = new RoundedButton("Next Day", pedometer);
-    DefaultTableModel progressNutritionModel = new DefaultTableModel(new Object[]{"Time", "Food", "Grams", "Calories"}, 0);
+    ListTableModel<NutritionEntry> progressNutritionModel = new ListTableModel<>((ns, r, c) -> nutritionCell(ns, r, c + 1),
+            FitnessFrame::sameEntry, "Time", "Food", "Grams", "Calories");
     JTable progressNutritionTable = new JTable(progressNutritionModel);
-    DefaultTableModel progressWorkoutsModel = new DefaultTableModel(
-            new Object[]{"Date", "Start", "Type", "Detail", "Minutes", "Calories"}, 0);
+    ListTableModel<Workout> progressWorkoutsModel = new ListTableModel<>((ws, r, c) -> workoutCell(ws.get(r), c),
+            (a, b) -> a == b, "Date", "Start", "Type", "Detail", "Minutes", "Calories");
     JTable progressWorkoutsTable = new JTable(progressWorkoutsModel);
 
     private JTabbedPane tabs;
+    /* Builders of the tabs not built yet, by index; a tab is built the first time it is selected */
+    private final Map<Integer, Supplier<JPanel>> unbuiltTabs = new HashMap<>();
+    /* The progress refresh in flight, if any; only touched on the EDT */
+    private SwingWorker<Progress, Void> progressWorker;
+    /* What the progress labels show; only touched on the EDT */
+    private int eatenToday, burnedToday;
+    private long eatenWeek, burnedWeek;
+    /* Refreshes that repeated triggers (held keys, bursts of changes) ask for are run at most once a frame */
+    private final RefreshScheduler refreshes = new RefreshScheduler(RefreshScheduler.FRAME_MILLIS);
+    /* The totals and tables on the Nutrition and Progress tabs */
+    private final RefreshScheduler.View progressView = refreshes.view(this::refreshAllProgress,
+            todayNutritionTable, progressNutritionTable);
+    /* The step counts on the Progress and Pedometer tabs */
+    private final RefreshScheduler.View stepsView = refreshes.view(this::showSteps, stepsTodayLbl, pedometerStepsLbl);
+    /* The store's changes, applied on the EDT a batch at a time */
+    private final BatchingSubscriber<StoreEvent> storeChanges = new BatchingSubscriber<>(SwingUtilities::invokeLater,
+            64, this::applyChanges, this::reload);
 
     /**
      * Creates an instance of FitnessFrame, calling all relevant functions for UI and actions
@@ -140,10 +154,13 @@ public class FitnessFrame extends JFrame {
      */
     FitnessFrame(InMemoryStore store) {
         super("Fitness App (Swing)");
+        long t0 = System.nanoTime();
         this.store = store;
+        this.database = store.database;
         this.auth = new AuthService(store);
         this.workoutSvc = new WorkoutService(store);
         this.nutritionSvc = new NutritionService(store);
+        this.goalSvc = new GoalService(store);
 
         addKeyListener(pedometer);
         setFocusable(false);
@@ -162,6 +179,20 @@ public class FitnessFrame extends JFrame {
 
         updateCaloriesFromFood();
         toggleWorkoutPanels();
+
+        store.subscribe(storeChanges);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                OPEN.end(t0);
+            }
+        });
+    }
+
+    @Override
+    public void dispose() {
+        storeChanges.cancel();
+        super.dispose();
     }
 
     /**
@@ -234,15 +265,40 @@ public class FitnessFrame extends JFrame {
         tabs.setBackground(Color.WHITE);
         tabs.setBorder(new EmptyBorder(6, 6, 6, 6));
 
+        // only the tab the app opens on is built now; the rest wait until they are first selected
         tabs.addTab("Nutrition", buildNutritionTab());
-        tabs.addTab("Workouts", buildWorkoutTab());
-        tabs.addTab("Saved Workouts", buildSavedWorkoutsTab());
-        tabs.addTab("Progress", buildProgressTab());
-        tabs.addTab("Pedometer", buildPedometerTab());
+        addLazyTab("Workouts", this::buildWorkoutTab);
+        addLazyTab("Saved Workouts", this::buildSavedWorkoutsTab);
+        addLazyTab("Progress", this::buildProgressTab);
+        addLazyTab("Pedometer", this::buildPedometerTab);
+        tabs.addChangeListener(e -> buildSelectedTab());
 
         return tabs;
     }
 
+    /**
+     * Adds a tab that shows an empty placeholder until it is first selected.
+     * @param title the tab's title
+     * @param builder builds the tab's content
+     */
+    private void addLazyTab(String title, Supplier<JPanel> builder) {
+        unbuiltTabs.put(tabs.getTabCount(), builder);
+        JPanel placeholder = new JPanel();
+        placeholder.setBackground(Theme.CARD);
+        tabs.addTab(title, placeholder);
+    }
+
+    /* Builds the selected tab's content if it has not been built yet */
+    private void buildSelectedTab() {
+        int i = tabs.getSelectedIndex();
+        Supplier<JPanel> builder = unbuiltTabs.remove(i);
+        if (builder == null) return;
+        UiRefreshEvent event = new UiRefreshEvent();
+        event.begin();
+        tabs.setComponentAt(i, builder.get());
+        event.finish("buildTab " + tabs.getTitleAt(i), currentUser, 0);
+    }
+
     /**
      * Creates the nutrition tab's JPanel object.
      */
@@ -506,12 +562,6 @@ public class FitnessFrame extends JFrame {
         split.setResizeWeight(0.25);
         p.add(split, BorderLayout.CENTER);
 
-        daysList.addListSelectionListener(e -> { if (!e.getValueIsAdjusting()) populateSavedWorkoutsForDay(daysList.getSelectedValue()); });
-        savedWorkoutsTable.getSelectionModel().addListSelectionListener(e -> {
-            int row = savedWorkoutsTable.getSelectedRow();
-            if (row >= 0) showSavedWorkoutDetailForRow(row);
-        });
-
         return p;
     }
 
@@ -703,7 +753,6 @@ public class FitnessFrame extends JFrame {
             int goal = (Integer) burnGoalSpinner.getValue();
             goalSvc.setDailyBurn(currentUser, goal);
             JOptionPane.showMessageDialog(this, "Daily burn goal set to " + goal + " kcal.", "Goal Updated", JOptionPane.INFORMATION_MESSAGE);
-            refreshAllProgress();
         });
 
         gramsSpinner.addChangeListener(e -> updateCaloriesFromFood());
@@ -720,12 +769,9 @@ public class FitnessFrame extends JFrame {
             // log against the current in-app day
             nutritionSvc.logNutritionForDate(currentUser, f.name, grams, kcal, currentDay);
             foodSavedLbl.setText("Added: " + f.name + " (" + grams + "g, " + kcal + " kcal)");
-            refreshAllProgress();
         });
 
-        pedometerPresser.addActionListener(e -> {
-            refreshAllProgress();
-        });
+        pedometerPresser.addActionListener(e -> stepsView.invalidate());
 
         workoutType.addItemListener(e -> { if (e.getStateChange() == ItemEvent.SELECTED) toggleWorkoutPanels(); });
         distanceUnit.addItemListener(e -> toggleDistanceEditors());
@@ -762,14 +808,22 @@ public class FitnessFrame extends JFrame {
             workoutSvc.logWorkout(currentUser, w, database);
             workoutSavedLbl.setText("Workout saved.");
             exNameField.setText("");
-            refreshAllProgress();
-            refreshDaysList();
+            // the rest of the views catch up when the store's change event arrives
+            addWorkoutDay(currentDay);
             selectDay(currentDay);
         });
 
+        // the Saved Workouts tab follows the selected day and row even before it is built
+        daysList.addListSelectionListener(e -> { if (!e.getValueIsAdjusting()) populateSavedWorkoutsForDay(daysList.getSelectedValue()); });
+        savedWorkoutsTable.getSelectionModel().addListSelectionListener(e -> {
+            int row = savedWorkoutsTable.getSelectedRow();
+            if (row >= 0) showSavedWorkoutDetailForRow(row);
+        });
+
         //when the user presses the refresh progress button
         refreshProgressBtn.addActionListener(e -> {
-            refreshAllProgress();
+            progressView.invalidate();
+            stepsView.invalidate();
             refreshDaysList();
         });
 
@@ -779,7 +833,7 @@ public class FitnessFrame extends JFrame {
                 JOptionPane.showMessageDialog(this, "Select a workout first.", "No Workout Selected", JOptionPane.WARNING_MESSAGE);
                 return;
             }
-            selectedWorkout.notes = workoutNotesArea.getText().trim();
+            selectedWorkout = workoutSvc.updateNotes(currentUser, selectedWorkout, workoutNotesArea.getText().trim());
             JOptionPane.showMessageDialog(this, "Notes saved for this workout.", "Notes Saved", JOptionPane.INFORMATION_MESSAGE);
         });
 
@@ -804,7 +858,8 @@ public class FitnessFrame extends JFrame {
         nextDayBtn.addActionListener(e -> {
             if (!ensureUser()) return;
             currentDay = currentDay.plusDays(1);
-            refreshAllProgress();
+            updateCurrentDayLabel();
+            progressView.invalidate();
             refreshDaysList();
             selectDay(currentDay);
         });
@@ -818,7 +873,8 @@ public class FitnessFrame extends JFrame {
         welcomeLbl.setText("Welcome, " + currentUser.name + "!");
         currentDay = LocalDate.now();
         updateCurrentDayLabel();
-        refreshAllProgress();
+        progressView.invalidate();
+        stepsView.invalidate();
         refreshDaysList();
         if (tabs != null) {
             tabs.setSelectedIndex(0); // go to Nutrition tab
@@ -855,95 +911,213 @@ public class FitnessFrame extends JFrame {
      * @param type the name of the workout
      * @return a boolean value - true if the workout is cardio, false otherwise
      */
-    private boolean isCardio(String type) {
+    private static boolean isCardio(String type) {
         return type.equals("Run") || type.equals("Walk") || type.equals("Cycle") || type.equals("Swim");
     }
 
     /**
-     * Updates several GUI components related to the user's progress to reflect the current state, should be called after an action updates values in memory
+     * Everything the progress views show for one user and day. The lists are the store's own immutable views,
+     * so building one copies nothing. Built off the EDT by {@link #computeProgress}.
+     */
+    private record Progress(String query, int eatenToday, int burnedToday, long eatenWeek, long burnedWeek,
+                            LocalDate weekStart, LocalDate weekEnd, List<NutritionEntry> weekNutrition,
+                            List<NutritionEntry> dayNutrition, List<Workout> dayWorkouts) { }
+
+    /**
+     * Updates several GUI components related to the user's progress to reflect the current state. Run by
+     * {@link #progressView}; call {@code progressView.invalidate()} after an action updates values in memory.
+     * The totals and rows are computed on a background thread and shown in one go when they are ready; a refresh
+     * still in flight is cancelled, since this one supersedes it.
      */
     private void refreshAllProgress() {
         if (currentUser == null) return;
+        if (progressWorker != null) progressWorker.cancel(false);
+        User u = currentUser;
+        LocalDate day = currentDay;
+        progressWorker = new SwingWorker<>() {
+            @Override
+            protected Progress doInBackground() {
+                return computeProgress(u, day, this::isCancelled);
+            }
 
-        int eatenToday = nutritionSvc.dailyCalories(currentUser, currentDay);
-        eatenTodayLbl.setText("Eaten today: " + eatenToday + " kcal");
+            @Override
+            protected void done() {
+                if (isCancelled() || progressWorker != this) return;
+                progressWorker = null;
+                try {
+                    Progress p = get();
+                    if (p != null && u == currentUser) applyProgress(p);
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        progressWorker.execute();
+    }
 
-        int burnedToday = workoutSvc.listWorkouts(currentUser).stream()
-                .filter(w -> LocalDateTime.parse(w.startedAt).toLocalDate().equals(currentDay))
-                .mapToInt(w -> w.estimatedCalories)
-                .sum();
-        burnedTodayLbl.setText("Burned today: " + burnedToday + " kcal");
+    /*
+     * Runs off the EDT. Takes one snapshot of the user and computes everything from it, so the totals always add
+     * up to the rows shown even while entries are being logged. Returns null once cancelled.
+     */
+    private Progress computeProgress(User u, LocalDate day, BooleanSupplier cancelled) {
+        UserSnapshot s = store.snapshot(u.email);
+        // last 7 days (including day)
+        LocalDate weekStart = day.minusDays(6);
+        int d = (int) day.toEpochDay(), from = (int) weekStart.toEpochDay();
+        List<NutritionEntry> dayNutrition = s.nutrition().forDay(d);
+        List<NutritionEntry> weekNutrition = s.nutrition().forRange(from, d);
+        List<Workout> dayWorkouts = s.workouts().forDay(d);
+        long burnedWeek = burned(s.workouts().forRange(from, d));
+        if (cancelled.getAsBoolean()) return null;
+        return new Progress(u.email + " " + day, (int) NutritionRows.kcal(dayNutrition), (int) burned(dayWorkouts),
+                NutritionRows.kcal(weekNutrition), burnedWeek, weekStart, day, weekNutrition, dayNutrition,
+                dayWorkouts);
+    }
 
+    private static long burned(List<Workout> workouts) {
+        long total = 0;
+        for (Workout w : workouts) total += w.estimatedCalories;
+        return total;
+    }
+
+    /* Shows a computed refresh: a handful of labels and at most one event per table. */
+    private void applyProgress(Progress p) {
+        UiRefreshEvent event = new UiRefreshEvent();
+        event.begin();
+        eatenToday = p.eatenToday();
+        burnedToday = p.burnedToday();
+        eatenWeek = p.eatenWeek();
+        burnedWeek = p.burnedWeek();
+        showTotals();
+        weekRangeLbl.setText("This week: " + p.weekStart() + " to " + p.weekEnd() + "");
+
+        weekNutritionModel.show(p.weekNutrition(), p.query());
+        progressNutritionModel.show(p.dayNutrition(), p.query());
+        progressWorkoutsModel.show(p.dayWorkouts(), p.query());
+        // the nutrition tab's table shows the same day
+        todayNutritionModel.show(p.dayNutrition(), p.query());
+        event.finish("refreshAllProgress", currentUser, p.weekNutrition().size() + 2 * p.dayNutrition().size()
+                + p.dayWorkouts().size());
+    }
+
+    /* Shows the pedometer's count; run by stepsView. */
+    private void showSteps() {
         stepsTodayLbl.setText("Steps: " + (int) pedometer.getSteps());
         stepsTotalLbl.setText("Kcal from steps: " + pedometer.getKcal());
         pedometerStepsLbl.setText(String.valueOf((int) pedometer.getSteps()));
+    }
 
-        // last 7 days (including currentDay)
-        LocalDate weekEnd = currentDay;
-        LocalDate weekStart = currentDay.minusDays(6);
-
-        int eatenWeek = store.getNutrition(currentUser.email).stream()
-                .filter(n -> {
-                    LocalDate d = n.loggedAt.toLocalDate();
-                    return !d.isBefore(weekStart) && !d.isAfter(weekEnd);
-                })
-                .mapToInt(n -> n.calories)
-                .sum();
+    /* Shows the progress totals and the burn goal against today's total. */
+    private void showTotals() {
+        eatenTodayLbl.setText("Eaten today: " + eatenToday + " kcal");
+        burnedTodayLbl.setText("Burned today: " + burnedToday + " kcal");
         eatenWeekLbl.setText("Last 7 days eaten: " + eatenWeek + " kcal");
-
-        int burnedWeek = workoutSvc.listWorkouts(currentUser).stream()
-                .filter(w -> {
-                    LocalDate d = LocalDateTime.parse(w.startedAt).toLocalDate();
-                    return !d.isBefore(weekStart) && !d.isAfter(weekEnd);
-                })
-                .mapToInt(w -> w.estimatedCalories)
-                .sum();
         burnedWeekLbl.setText("Last 7 days burned: " + burnedWeek + " kcal");
 
-        // weekly nutrition table (last 7 days)
-        weekNutritionModel.setRowCount(0);
-        for (NutritionEntry n : nutritionSvc.listForRange(currentUser, weekStart, weekEnd)) {
-            weekNutritionModel.addRow(new Object[]{
-                    n.loggedAt.toLocalDate().toString(),
-                    n.loggedAt.toLocalTime().withSecond(0).withNano(0).toString(),
-                    n.itemName,
-                    n.grams,
-                    n.calories
-            });
-        }
-        weekRangeLbl.setText("This week: " + weekStart + " to " + weekEnd + "");
-
-        if (currentUser.goal.dailyBurnTarget != null) {
-            int remain = Math.max(currentUser.goal.dailyBurnTarget - burnedToday, 0);
-            burnGoalLbl.setText("Burn goal: " + currentUser.goal.dailyBurnTarget + " kcal (Remaining: " + remain + ")");
+        Integer goal = currentUser.goal.dailyBurnTarget;
+        if (goal != null) {
+            int remain = Math.max(goal - burnedToday, 0);
+            burnGoalLbl.setText("Burn goal: " + goal + " kcal (Remaining: " + remain + ")");
         } else {
             burnGoalLbl.setText("Burn goal: -");
         }
+    }
 
-        // progress nutrition table (for current day)
-        progressNutritionModel.setRowCount(0);
-        for (NutritionEntry n : nutritionSvc.listForDate(currentUser, currentDay)) {
-            progressNutritionModel.addRow(new Object[]{
-                    n.loggedAt.toLocalTime().withSecond(0).withNano(0).toString(), n.itemName, n.grams, n.calories
-            });
+    /**
+     * Applies a batch of the store's changes to the views that show them; called on the EDT. Only what a change
+     * touches is read again (a day's total, a table's view), and a table that just gained rows at the end is told
+     * about only those rows. Re-reading rather than adding the change to what is shown means a change that a full
+     * refresh already picked up is harmless.
+     * @param events the changes, oldest first
+     */
+    private void applyChanges(List<StoreEvent> events) {
+        User u = currentUser;
+        if (u == null) return;
+        LocalDate weekStart = currentDay.minusDays(6);
+        LocalDate savedDay = daysList.getSelectedValue();
+        boolean dayNutrition = false, weekNutrition = false, dayWorkouts = false, weekWorkouts = false;
+        boolean goal = false, saved = false;
+        for (StoreEvent e : events) {
+            if (!e.email().equals(u.email)) continue;
+            if (e instanceof StoreEvent.NutritionAdded n) {
+                LocalDate d = n.entry().loggedAt.toLocalDate();
+                dayNutrition |= d.equals(currentDay);
+                weekNutrition |= !d.isBefore(weekStart) && !d.isAfter(currentDay);
+            } else if (e instanceof StoreEvent.WorkoutAdded w) {
+                LocalDate d = w.workout().startTime().toLocalDate();
+                dayWorkouts |= d.equals(currentDay);
+                weekWorkouts |= !d.isBefore(weekStart) && !d.isAfter(currentDay);
+                saved |= d.equals(savedDay);
+                addWorkoutDay(d);
+            } else if (e instanceof StoreEvent.GoalChanged) {
+                goal = true;
+            } else if (e instanceof StoreEvent.NotesChanged c) {
+                // the store replaced the workout with a copy: pick it up wherever the old one is shown
+                saved |= c.workout().startTime().toLocalDate().equals(savedDay);
+                if (selectedWorkout != null && c.workout().index == selectedWorkout.index) {
+                    selectedWorkout = c.workout();
+                    if (!workoutNotesArea.isFocusOwner()) workoutNotesArea.setText(c.notes() == null ? "" : c.notes());
+                }
+            }
         }
-
-        // today's workouts table (for current day)
-        progressWorkoutsModel.setRowCount(0);
-        for (Workout w : workoutSvc.listWorkouts(currentUser).stream()
-                .filter(w -> LocalDateTime.parse(w.startedAt).toLocalDate().equals(currentDay)).toList()) {
-            progressWorkoutsModel.addRow(new Object[]{
-                    LocalDateTime.parse(w.startedAt).toLocalDate().toString(),
-                    LocalDateTime.parse(w.startedAt).toLocalTime().withNano(0).toString(),
-                    w.type,
-                    summarizeDetail(w),
-                    w.durationMin, w.estimatedCalories
-            });
+        if (saved) {
+            savedWorkoutsModel.show(workoutsByStart(u, savedDay), u.email + " " + savedDay);
+        }
+        if (!(dayNutrition || weekNutrition || dayWorkouts || weekWorkouts || goal)) return;
+        if (progressWorker != null) {
+            // the refresh in flight may have read the store before these changes
+            progressView.invalidate();
+            return;
+        }
+        UiRefreshEvent event = new UiRefreshEvent();
+        event.begin();
+        String query = u.email + " " + currentDay;
+        int entries = 0;
+        if (dayNutrition) {
+            eatenToday = nutritionSvc.dailyCalories(u, currentDay);
+            List<NutritionEntry> day = nutritionSvc.listForDate(u, currentDay);
+            progressNutritionModel.show(day, query);
+            todayNutritionModel.show(day, query);
+            entries += day.size();
+        }
+        if (weekNutrition) {
+            eatenWeek = nutritionSvc.caloriesLastDays(u, currentDay, 7);
+            List<NutritionEntry> week = nutritionSvc.listForRange(u, weekStart, currentDay);
+            weekNutritionModel.show(week, query);
+            entries += week.size();
+        }
+        if (dayWorkouts) {
+            burnedToday = workoutSvc.dailyCaloriesBurned(u, currentDay);
+            List<Workout> day = workoutSvc.listForDate(u, currentDay);
+            progressWorkoutsModel.show(day, query);
+            entries += day.size();
         }
+        if (weekWorkouts) burnedWeek = workoutSvc.caloriesBurnedLastDays(u, currentDay, 7);
+        showTotals();
+        event.finish("applyChanges", u, entries);
+    }
 
-        // keep the nutrition tab's table in sync with the active day
-        refreshTodayNutritionTable();
-        updateCurrentDayLabel();
+    /* Called instead of applyChanges when changes were missed: shows everything afresh. */
+    private void reload() {
+        progressView.invalidate();
+        refreshDaysList();
+    }
+
+    /**
+     * Adds a day to the days list, newest first, unless it is already there.
+     * @param d the day
+     */
+    private void addWorkoutDay(LocalDate d) {
+        int lo = 0, hi = daysListModel.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = daysListModel.get(mid).compareTo(d);
+            if (c == 0) return;
+            if (c > 0) lo = mid + 1;
+            else hi = mid;
+        }
+        daysListModel.add(lo, d);
+        if (daysList.getSelectedValue() == null) daysList.setSelectedIndex(0);
     }
 
     /**
@@ -951,18 +1125,17 @@ public class FitnessFrame extends JFrame {
      */
     private void refreshDaysList() {
         if (currentUser == null) return;
+        UiRefreshEvent event = new UiRefreshEvent();
+        event.begin();
         daysListModel.clear();
-        List<LocalDate> dates = workoutSvc.listWorkouts(currentUser).stream()
-                .map(w -> LocalDateTime.parse(w.startedAt).toLocalDate())
-                .distinct()
-                .sorted(Comparator.reverseOrder())
-                .toList();
+        List<LocalDate> dates = workoutSvc.listWorkoutDays(currentUser);
         for (LocalDate d : dates) {
             daysListModel.addElement(d);
         }
         if (!dates.isEmpty() && daysList.getSelectedValue() == null) {
             daysList.setSelectedIndex(0);
         }
+        event.finish("refreshDaysList", currentUser, dates.size());
     }
 
     /**
@@ -983,22 +1156,6 @@ public class FitnessFrame extends JFrame {
      * @param d the day to populate the saved workouts object with
      */
     
-    /**
-     * Rebuilds the 'Today's Nutrition' table on the Nutrition tab for the current day.
-     */
-    private void refreshTodayNutritionTable() {
-        todayNutritionModel.setRowCount(0);
-        if (currentUser == null) return;
-        for (NutritionEntry n : nutritionSvc.listForDate(currentUser, currentDay)) {
-            todayNutritionModel.addRow(new Object[]{
-                    n.loggedAt.toLocalTime().withSecond(0).withNano(0).toString(),
-                    n.itemName,
-                    n.grams,
-                    n.calories
-            });
-        }
-    }
-
     /**
      * Updates the small day label used next to the Next Day button.
      */
@@ -1007,49 +1164,43 @@ public class FitnessFrame extends JFrame {
     }
 
     private void populateSavedWorkoutsForDay(LocalDate d) {
-        savedWorkoutsModel.setRowCount(0);
+        UiRefreshEvent event = new UiRefreshEvent();
+        event.begin();
         savedWorkoutDetail.setText("");
         workoutNotesArea.setText("");
         selectedWorkout = null;
-        if (currentUser == null || d == null) return;
-        List<Workout> list = workoutSvc.listWorkouts(currentUser).stream()
-                .filter(w -> LocalDateTime.parse(w.startedAt).toLocalDate().equals(d))
-                .sorted(Comparator.comparing(w -> w.startedAt))
-                .toList();
-        for (Workout w : list) {
-            savedWorkoutsModel.addRow(new Object[]{
-                    LocalDateTime.parse(w.startedAt).toLocalTime().withNano(0).toString(),
-                    w.type,
-                    summarizeDetail(w),
-                    w.durationMin, w.estimatedCalories
-            });
+        if (currentUser == null || d == null) {
+            savedWorkoutsModel.show(List.of(), null);
+            return;
+        }
+        List<Workout> list = workoutsByStart(currentUser, d);
+        savedWorkoutsModel.show(list, currentUser.email + " " + d);
+        event.finish("populateSavedWorkoutsForDay", currentUser, list.size());
+    }
+
+    /* A day's workouts in the order the Saved Workouts table shows them: the store's own view if it already is */
+    private List<Workout> workoutsByStart(User u, LocalDate d) {
+        List<Workout> ws = workoutSvc.listForDate(u, d);
+        for (int i = 1; i < ws.size(); i++) {
+            if (ws.get(i - 1).startEpochSec > ws.get(i).startEpochSec) {
+                return ws.stream().sorted(Comparator.comparingLong(w -> w.startEpochSec)).toList();
+            }
         }
+        return ws;
     }
 
     /**
      * A GUI function for displaying information relevant to a workout. This modifies the savedWorkoutDetail JTextArea object.
-     * @param row a value corresponding to an index in the WorkoutService object. This is how the function gets access to the workout to display information for.
+     * @param row a row of the saved workouts table. The table model holds the day's workouts in row order, so this
+     *            is the workout itself, even when two of them start in the same minute.
      */
     private void showSavedWorkoutDetailForRow(int row) {
         if (currentUser == null) return;
-        LocalDate day = daysList.getSelectedValue();
-        if (day == null) return;
-        String at = String.valueOf(savedWorkoutsModel.getValueAt(row, 0));
-        List<Workout> list = workoutSvc.listWorkouts(currentUser).stream()
-                .filter(w -> LocalDateTime.parse(w.startedAt).toLocalDate().equals(day)
-                        && LocalDateTime.parse(w.startedAt).toLocalTime().withNano(0).toString().equals(at))
-                .sorted(Comparator.comparing(w -> w.startedAt)).toList();
-        if (list.isEmpty()) {
-            savedWorkoutDetail.setText("");
-            workoutNotesArea.setText("");
-            selectedWorkout = null;
-            return;
-        }
-        Workout w = list.get(row);
+        Workout w = savedWorkoutsModel.row(row);
         selectedWorkout = w;
 
         StringBuilder sb = new StringBuilder();
-        sb.append("Start: ").append(LocalDateTime.parse(w.startedAt).toLocalTime().withNano(0))
+        sb.append("Start: ").append(w.startTime().toLocalTime())
                 .append("\nType: ").append(w.type)
                 .append("\nMinutes: ").append(w.durationMin)
                 .append("\nCalories: ").append(w.estimatedCalories);
@@ -1071,7 +1222,7 @@ public class FitnessFrame extends JFrame {
     // * @param w the given workout object
      //* @return A string describing the details of the workout object
      //*/
-    private String summarizeDetail(Workout w) {
+    private static String summarizeDetail(Workout w) {
         if (isCardio(w.type)) {
             return w.distanceUnit.equals("Miles")
                     ? (String.format("%.2f miles", w.distanceValue == null ? 0.0 : w.distanceValue))
@@ -1081,6 +1232,36 @@ public class FitnessFrame extends JFrame {
         return bp + " — " + (w.exerciseName == null ? "-" : w.exerciseName) + " (" + w.sets + "x" + w.reps + ")";
     }
 
+    /* Cells of the nutrition tables: Date, Time, Food, Grams, Calories (tables without a date start at Time). */
+    private static Object nutritionCell(List<NutritionEntry> entries, int row, int column) {
+        NutritionRows rows = NutritionRows.of(entries);
+        long sec = rows.epochSec(row);
+        return switch (column) {
+            case 0 -> LocalDate.ofEpochDay(Math.floorDiv(sec, 86400L)).toString();
+            case 1 -> LocalTime.ofSecondOfDay(Math.floorMod(sec, 86400L) / 60 * 60).toString();
+            case 2 -> rows.item(row);
+            case 3 -> rows.grams(row);
+            default -> rows.kcal(row);
+        };
+    }
+
+    /* Cells of the workout tables: Date, Start, Type, Detail, Minutes, Calories (tables without a date start at Start). */
+    private static Object workoutCell(Workout w, int column) {
+        return switch (column) {
+            case 0 -> w.startTime().toLocalDate().toString();
+            case 1 -> w.startTime().toLocalTime().toString();
+            case 2 -> w.type;
+            case 3 -> summarizeDetail(w);
+            case 4 -> w.durationMin;
+            default -> w.estimatedCalories;
+        };
+    }
+
+    /* Columnar nutrition views build a new object per read, so entries are matched by id. */
+    private static boolean sameEntry(NutritionEntry a, NutritionEntry b) {
+        return a.id == b.id;
+    }
+
     /**
      * Updates the calorie count from the selected food (using the foodPicker object).
      */
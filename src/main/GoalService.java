@@ -1,16 +1,27 @@
-package main;
-
-
-/**
- * Used for updating a user's goals.
- */
-public class GoalService { 
-    /**
-     * Sets a daily burn target for a given user.
-     * @param u the user who will have their burn target updates
-     * @param k the burn target in kilocalories
-     */
-    void setDailyBurn(User u, Integer k) {
-        u.goal.dailyBurnTarget=k;
-    } 
+package main;
+
+
+/**
+ * Used for updating a user's goals.
+ */
+public class GoalService { 
+    private static final Metrics.Operation SET_DAILY_BURN = Metrics.operation("GoalService.setDailyBurn");
+    private final InMemoryStore store;
+    GoalService(InMemoryStore s) {
+        store = s;
+    }
+
+    /**
+     * Sets a daily burn target for a given user.
+     * @param u the user who will have their burn target updates
+     * @param k the burn target in kilocalories
+     */
+    void setDailyBurn(User u, Integer k) {
+        long t0 = System.nanoTime();
+        try {
+            store.setDailyBurn(u, k);
+        } finally {
+            SET_DAILY_BURN.end(t0);
+        }
+    } 
 }
\ No newline at end of file
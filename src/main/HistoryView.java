@@ -0,0 +1,39 @@
+package main;
+
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * An immutable, point-in-time view of one user's log of items. Obtaining one is O(1) and never blocks; entries
+ * logged afterwards are not visible through it.
+ * @param <T> the item type
+ */
+public interface HistoryView<T> {
+    /**
+     * @return how many items the view holds
+     */
+    int size();
+
+    /**
+     * @return every item in log order
+     */
+    List<T> all();
+
+    /**
+     * @param day the epoch day
+     * @return the items logged on that day, in log order
+     */
+    List<T> forDay(int day);
+
+    /**
+     * @param from the first epoch day (inclusive)
+     * @param to the last epoch day (inclusive)
+     * @return the items logged between the two days, ordered by day
+     */
+    List<T> forRange(int from, int to);
+
+    /**
+     * @return the epoch days with at least one item, ascending
+     */
+    NavigableSet<Integer> days();
+}
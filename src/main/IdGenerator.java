@@ -0,0 +1,12 @@
+package main;
+
+/**
+ * Hands out 64-bit ids for logged entries. Implementations must be safe to call from many threads at once.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+    /**
+     * @return a new id, never returned before by this generator
+     */
+    long nextId();
+}
@@ -1,80 +1,535 @@
-package main;
-
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-/**
- * Stores relevent information in memory for the application.
- */
-public class InMemoryStore {
-    final HashMap<String, User> usersByEmail = new HashMap<>();
-    final Map<String, List<Workout>> workoutsByEmail;
-    final Map<String, List<NutritionEntry>> nutritionByEmail = new HashMap<>();
-
-    InMemoryStore() {
-        HashMap<String, List<Workout>> workoutsByEmail1;
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            File jsonFile = new File("workouts.json");
-
-            workoutsByEmail1 = mapper.readValue(jsonFile, new TypeReference<HashMap<String, List<Workout>>>() {});
-        } catch (FileNotFoundException e) {
-            workoutsByEmail1 = new HashMap<>();
-        } catch (IOException e) {
-            workoutsByEmail1 = new HashMap<>();
-            e.printStackTrace();
-        }
-
-        this.workoutsByEmail = workoutsByEmail1;
-    }
-    
-    /**
-     * If the given email & name combination is not present, it is inserted into the hashmap. The new (or old) user is returned
-     * @return the user with the given name & email
-     * @param email the email of the user
-     * @param name the name of the user
-     */
-    User getOrCreateUser(String email, String name) { 
-        return usersByEmail.computeIfAbsent(email, e -> new User(email, name)); 
-    }
-    
-    /**
-     * Adds a workout to a corresponding email's workouts.
-     * @param email the email the workout will be added to
-     * @param w the workout added to the user's workouts
-     */
-    void addWorkout(String email, Workout w) { 
-        workoutsByEmail.computeIfAbsent(email, k -> new ArrayList<>()).add(w); 
-    }
-
-    /**
-     * @param email the email the workout will be added to
-     * @param n the nutrition entry added to the user's nutrition
-     */
-    void addNutrition(String email, NutritionEntry n) { 
-        nutritionByEmail.computeIfAbsent(email, k -> new ArrayList<>()).add(n); 
-    }
-
-    /**
-     * @param email the email the workouts will be retrieved from
-     */
-    List<Workout> getWorkouts(String email) { 
-        return workoutsByEmail.getOrDefault(email, Collections.emptyList()); 
-    }
-
-    /**
-     * @param email the email the nutrition will be retrieved from
-     */
-    List<NutritionEntry> getNutrition(String email) { 
-        return nutritionByEmail.getOrDefault(email, Collections.emptyList()); 
-    }
+package main;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores relevent information in memory for the application.
+ * <p>
+ * Safe for use from many threads. Each user's writes are serialized by that user's own lock
+ * ({@link UserHistory#lock}), so writes for different users never contend. Reads take no lock at all: they go
+ * through the user's latest {@link UserSnapshot}, which is immutable, so a long report never holds up logging.
+ * Logging methods hand the change to the {@link Database} while holding the lock, which keeps the journal order
+ * in step with the in-memory order; a workout or notes edit first waits for any workout an {@link IngestPipeline}
+ * has applied for the user to be persisted, since notes edits refer to workouts by position. They also publish it as a {@link StoreEvent} to whoever has
+ * {@linkplain #subscribe subscribed}, in the same order.
+ */
+public class InMemoryStore {
+    private static final Metrics.Operation LOAD = Metrics.operation("InMemoryStore.load");
+    private static final Metrics.Operation LOG_WORKOUT = Metrics.operation("InMemoryStore.logWorkout");
+    private static final Metrics.Operation LOG_NUTRITION = Metrics.operation("InMemoryStore.logNutrition");
+    private static final Metrics.Operation LOG_BATCH = Metrics.operation("InMemoryStore.logBatch");
+    final ConcurrentHashMap<String, User> usersByEmail = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, UserHistory> historyByEmail = new ConcurrentHashMap<>();
+    final Database database;
+    final boolean columnarNutrition;
+    /* Pipelines whose persist stage may trail what they have applied; drained before each snapshot */
+    final List<IngestPipeline> pipelines = new CopyOnWriteArrayList<>();
+    /* Held while a new user's history is created, and by runExclusive() */
+    private final ReentrantLock creationLock = new ReentrantLock();
+    /* Delivers change events to subscribers, each on a pooled daemon thread */
+    private final SubmissionPublisher<List<StoreEvent>> changes = new SubmissionPublisher<>(
+            Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "store-events");
+                t.setDaemon(true);
+                return t;
+            }), Flow.defaultBufferSize());
+
+    InMemoryStore() {
+        this(new Database());
+    }
+
+    InMemoryStore(Database database) {
+        this(database, Boolean.getBoolean("fitness.columnarNutrition"));
+    }
+
+    /**
+     * Creates a store and rebuilds its state from the given database.
+     * @param database the persistence layer to load from and write to
+     * @param columnarNutrition true to keep nutrition entries in primitive columns ({@link ColumnarNutritionLog})
+     *                          instead of as objects ({@link ListNutritionLog})
+     */
+    InMemoryStore(Database database, boolean columnarNutrition) {
+        this.database = database;
+        this.columnarNutrition = columnarNutrition;
+        StoreLoadEvent event = new StoreLoadEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        database.load(this);
+        LOAD.end(t0);
+        if (event.shouldCommit()) {
+            event.users = usersByEmail.size();
+            event.entries = entriesPerUser(true);
+            event.bytes = database.bytesOnDisk();
+            event.commit();
+        }
+        Metrics.gauge("store.users", usersByEmail::size);
+        Metrics.gauge("store.entries", () -> entriesPerUser(true));
+        Metrics.gauge("store.entriesPerUser.max", () -> entriesPerUser(false));
+        Metrics.gauge("store.entriesPerUser.mean", () -> historyByEmail.isEmpty() ? 0 : entriesPerUser(true) / historyByEmail.size());
+    }
+
+    /**
+     * If the given email & name combination is not present, it is inserted into the hashmap. The new (or old) user is returned
+     * @return the user with the given name & email
+     * @param email the email of the user
+     * @param name the name of the user
+     */
+    User getOrCreateUser(String email, String name) { 
+        return usersByEmail.computeIfAbsent(email, e -> new User(email, name)); 
+    }
+    
+    /**
+     * @param email the email of the user
+     * @return true if a user with the given email exists
+     */
+    boolean hasUser(String email) {
+        return usersByEmail.containsKey(email);
+    }
+
+    /**
+     * Returns the user with the given email, creating them and appending them to the journal if they are new.
+     * @param email the email of the user
+     * @param name the name used if the user is new
+     */
+    User signIn(String email, String name) {
+        UserHistory h = history(email);
+        h.lock.lock();
+        try {
+            User u = usersByEmail.get(email);
+            if (u == null) {
+                u = getOrCreateUser(email, name);
+                database.appendUser(u);
+            }
+            return u;
+        } finally {
+            h.lock.unlock();
+        }
+    }
+
+    /**
+     * Sets a user's daily burn target and appends the change to the journal.
+     * @param u the user
+     * @param k the burn target in kilocalories
+     */
+    void setDailyBurn(User u, Integer k) {
+        UserHistory h = history(u.email);
+        h.lock.lock();
+        try {
+            u.goal.dailyBurnTarget = k;
+            database.appendUser(u);
+            if (hasSubscribers()) publish(new StoreEvent.GoalChanged(u.email, k));
+        } finally {
+            h.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a workout to a corresponding email's workouts.
+     * @param email the email the workout will be added to
+     * @param w the workout added to the user's workouts
+     */
+    void addWorkout(String email, Workout w) { 
+        w.canonicalize();
+        UserHistory h = history(email);
+        h.lock.lock();
+        try {
+            h.addWorkout(w);
+            if (hasSubscribers()) publish(new StoreEvent.WorkoutAdded(email, w));
+        } finally {
+            h.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a workout and appends it to the journal.
+     * @param email the email the workout will be added to
+     * @param w the workout added to the user's workouts
+     * @throws IllegalStateException if an {@link IngestPipeline} that applied an earlier workout for the user
+     *                               stopped on a failure before persisting it
+     */
+    void logWorkout(String email, Workout w) {
+        long t0 = System.nanoTime();
+        w.canonicalize();
+        UserHistory h = history(email);
+        h.lock.lock();
+        try {
+            awaitPipeline(h);
+            h.addWorkout(w);
+            database.appendWorkout(email, w);
+            if (hasSubscribers()) publish(new StoreEvent.WorkoutAdded(email, w));
+        } finally {
+            h.lock.unlock();
+            LOG_WORKOUT.end(t0);
+        }
+    }
+
+    /**
+     * Replaces the notes on one of a user's workouts and appends the edit to the journal. The workout is not
+     * changed: a copy with the new notes takes its place, so snapshots already handed out are unaffected.
+     * @param email the owner of the workout
+     * @param w the workout, or an earlier copy of it
+     * @param notes the new notes
+     * @return the copy now in the store
+     * @throws IllegalArgumentException if the workout is not one of the user's
+     * @throws IllegalStateException if the workout came through an {@link IngestPipeline} that stopped on a
+     *                               failure before persisting it
+     */
+    Workout updateNotes(String email, Workout w, String notes) {
+        UserHistory h = history(email);
+        h.lock.lock();
+        try {
+            List<Workout> all = h.workouts.snapshot().all();
+            if (w.index < 0 || w.index >= all.size() || all.get(w.index).startEpochSec != w.startEpochSec) {
+                throw new IllegalArgumentException("not one of " + email + "'s workouts");
+            }
+            // the edit must reach the journal after the workout it refers to
+            awaitPipeline(h);
+            Workout updated = h.replaceNotes(w.index, notes);
+            database.appendNotes(email, w.index, notes);
+            if (hasSubscribers()) publish(new StoreEvent.NotesChanged(email, updated, notes));
+            return updated;
+        } finally {
+            h.lock.unlock();
+        }
+    }
+
+    /**
+     * @param email the email the workout will be added to
+     * @param n the nutrition entry added to the user's nutrition
+     */
+    void addNutrition(String email, NutritionEntry n) { 
+        UserHistory h = history(email);
+        h.lock.lock();
+        try {
+            h.addNutrition(n);
+            if (hasSubscribers()) publish(new StoreEvent.NutritionAdded(email, n));
+        } finally {
+            h.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a nutrition entry and appends it to the journal.
+     * @param email the email the entry will be added to
+     * @param n the nutrition entry added to the user's nutrition
+     */
+    void logNutrition(String email, NutritionEntry n) {
+        long t0 = System.nanoTime();
+        UserHistory h = history(email);
+        h.lock.lock();
+        try {
+            h.addNutrition(n);
+            database.appendNutrition(email, n);
+            if (hasSubscribers()) publish(new StoreEvent.NutritionAdded(email, n));
+        } finally {
+            h.lock.unlock();
+            LOG_NUTRITION.end(t0);
+        }
+    }
+
+    /**
+     * Adds many workouts and nutrition entries for one user under a single acquisition of the user's lock,
+     * publishing them to readers at once and appending them to the journal as one block.
+     * @param email the owner of the records
+     * @param workouts the workouts, in the order they should be listed
+     * @param nutrition the nutrition entries
+     */
+    void logBatch(String email, Collection<Workout> workouts, Collection<NutritionEntry> nutrition) {
+        if (workouts.isEmpty() && nutrition.isEmpty()) return;
+        long t0 = System.nanoTime();
+        List<JournalRecord> records = new ArrayList<>(workouts.size() + nutrition.size());
+        for (Workout w : workouts) {
+            w.canonicalize();
+            records.add(JournalRecord.workout(email, w));
+        }
+        for (NutritionEntry n : nutrition) records.add(JournalRecord.nutrition(email, n));
+        UserHistory h = history(email);
+        h.lock.lock();
+        try {
+            if (!workouts.isEmpty()) awaitPipeline(h);
+            h.addAll(workouts, nutrition);
+            database.appendBatch(records);
+            if (hasSubscribers()) {
+                List<StoreEvent> events = new ArrayList<>(records.size());
+                for (Workout w : workouts) events.add(new StoreEvent.WorkoutAdded(email, w));
+                for (NutritionEntry n : nutrition) events.add(new StoreEvent.NutritionAdded(email, n));
+                publish(events);
+            }
+        } finally {
+            h.lock.unlock();
+            LOG_BATCH.end(t0);
+        }
+    }
+
+    /**
+     * Adds records for many users, one {@link #logBatch(String, Collection, Collection)} per user.
+     * @param workouts workouts keyed by owner email
+     * @param nutrition nutrition entries keyed by owner email
+     */
+    void logBatch(Map<String, ? extends Collection<Workout>> workouts,
+                  Map<String, ? extends Collection<NutritionEntry>> nutrition) {
+        Set<String> emails = new HashSet<>(workouts.keySet());
+        emails.addAll(nutrition.keySet());
+        for (String email : emails) {
+            Collection<Workout> ws = workouts.get(email);
+            Collection<NutritionEntry> ns = nutrition.get(email);
+            logBatch(email, ws == null ? List.of() : ws, ns == null ? List.of() : ns);
+        }
+    }
+
+    /**
+     * Adds a workout to the user's history only: no totals, no journal. The first stage of an {@link IngestPipeline}.
+     * @param email the owner of the workout
+     * @param w the workout
+     * @param pipeline the pipeline that will persist it
+     * @param seq its event number in that pipeline
+     */
+    void applyWorkout(String email, Workout w, IngestPipeline pipeline, long seq) {
+        w.canonicalize();
+        UserHistory h = history(email);
+        h.lock.lock();
+        try {
+            h.indexWorkout(w);
+            h.pipeline = pipeline;
+            h.pipelineSeq = seq;
+        } finally {
+            h.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a nutrition entry to the user's history only: no totals, no journal.
+     * @param email the owner of the entry
+     * @param n the entry
+     */
+    void applyNutrition(String email, NutritionEntry n) {
+        UserHistory h = history(email);
+        h.lock.lock();
+        try {
+            h.indexNutrition(n);
+        } finally {
+            h.lock.unlock();
+        }
+    }
+
+    /**
+     * @param email the user's email
+     * @return the user's running daily totals, created with the user if need be
+     */
+    DailyTotals totals(String email) {
+        return history(email).totals;
+    }
+
+    /**
+     * Returns the user's data as of now, in O(1) and without locking. Use one snapshot for all the queries
+     * behind a single screen or report so they agree with each other.
+     * @param email the user's email
+     * @return the user's latest snapshot, or an empty one for an unknown user
+     */
+    UserSnapshot snapshot(String email) {
+        UserHistory h = historyByEmail.get(email);
+        return h == null ? UserSnapshot.EMPTY : h.snapshot();
+    }
+
+    /**
+     * @param email the email the workouts will be retrieved from
+     */
+    List<Workout> getWorkouts(String email) { 
+        return snapshot(email).workouts().all();
+    }
+
+    /**
+     * @param email the email the nutrition will be retrieved from
+     */
+    List<NutritionEntry> getNutrition(String email) { 
+        return snapshot(email).nutrition().all();
+    }
+
+    /**
+     * @param email the user's email
+     * @param day the epoch day
+     * @return the user's workouts that started on that day
+     */
+    List<Workout> workoutsForDay(String email, int day) {
+        return snapshot(email).workouts().forDay(day);
+    }
+
+    /**
+     * @param email the user's email
+     * @param from the first epoch day (inclusive)
+     * @param to the last epoch day (inclusive)
+     * @return the user's workouts that started between the two days, ordered by day
+     */
+    List<Workout> workoutsForRange(String email, int from, int to) {
+        return snapshot(email).workouts().forRange(from, to);
+    }
+
+    /**
+     * @param email the user's email
+     * @return the epoch days on which the user has at least one workout, ascending
+     */
+    NavigableSet<Integer> workoutDays(String email) {
+        return snapshot(email).workouts().days();
+    }
+
+    /**
+     * @param email the user's email
+     * @param day the epoch day
+     * @return the user's nutrition entries logged on that day
+     */
+    List<NutritionEntry> nutritionForDay(String email, int day) {
+        return snapshot(email).nutrition().forDay(day);
+    }
+
+    /**
+     * @param email the user's email
+     * @param from the first epoch day (inclusive)
+     * @param to the last epoch day (inclusive)
+     * @return the user's nutrition entries logged between the two days, ordered by day
+     */
+    List<NutritionEntry> nutritionForRange(String email, int from, int to) {
+        return snapshot(email).nutrition().forRange(from, to);
+    }
+
+    /**
+     * @param email the user's email
+     * @param m the metric to total
+     * @param from the first epoch day (inclusive)
+     * @param to the last epoch day (inclusive)
+     * @return the user's total for the metric over the given days, in O(log n)
+     */
+    long total(String email, DailyTotals.Metric m, int from, int to) {
+        UserHistory h = historyByEmail.get(email);
+        return h == null ? 0 : h.totals.sum(m, from, to);
+    }
+
+    /**
+     * Subscribes to every change made through this store. Each item holds the changes from one write (a whole
+     * batch for {@link #logBatch}), and items for one user arrive in the order the writes happened. Delivery is
+     * asynchronous and never holds up writers: a subscriber more than a buffer's worth of items behind misses
+     * items instead, and a {@link BatchingSubscriber} is told so.
+     * @param s the subscriber
+     */
+    void subscribe(Flow.Subscriber<? super List<StoreEvent>> s) {
+        changes.subscribe(s);
+    }
+
+    /**
+     * @return true if anyone is subscribed; check before building events, since nothing needs them otherwise
+     */
+    boolean hasSubscribers() {
+        return changes.hasSubscribers();
+    }
+
+    /**
+     * Publishes one change; a no-op while nobody is subscribed.
+     */
+    void publish(StoreEvent e) {
+        if (changes.hasSubscribers()) publish(List.of(e));
+    }
+
+    private void publish(List<StoreEvent> events) {
+        changes.offer(events, (s, dropped) -> {
+            if ((Object) s instanceof BatchingSubscriber<?> b) b.missed();
+            return false;
+        });
+    }
+
+    /**
+     * Runs the given action while no user's data can change: no user can be added and every user's lock is
+     * held, and every {@link IngestPipeline} has persisted what it applied. Used to capture a snapshot that
+     * matches the journal exactly; keep the action short, since all logging waits for it.
+     * @param action the action; it may read any UserHistory directly
+     */
+    void runExclusive(Runnable action) {
+        creationLock.lock();
+        List<UserHistory> locked = new ArrayList<>();
+        try {
+            for (UserHistory h : historyByEmail.values()) {
+                h.lock.lock();
+                locked.add(h);
+            }
+            for (IngestPipeline p : pipelines) p.awaitPersisted();
+            action.run();
+        } finally {
+            for (UserHistory h : locked) h.lock.unlock();
+            creationLock.unlock();
+        }
+    }
+
+    /*
+     * Waits until the last workout a pipeline applied for the user is in the journal, so a workout or notes edit
+     * journaled next lands after it. The caller holds the user's lock, which the pipeline's persist stage never
+     * takes.
+     */
+    private static void awaitPipeline(UserHistory h) {
+        if (h.pipeline == null) return;
+        h.pipeline.awaitPersisted(h.pipelineSeq);
+        h.pipeline = null;
+    }
+
+    /* The number of workouts and nutrition entries summed over every user, or the most any one user has. */
+    private long entriesPerUser(boolean sum) {
+        long total = 0, max = 0;
+        for (UserHistory h : historyByEmail.values()) {
+            UserSnapshot s = h.snapshot();
+            long n = s.workouts().size() + s.nutrition().size();
+            total += n;
+            max = Math.max(max, n);
+        }
+        return sum ? total : max;
+    }
+
+    private UserHistory history(String email) {
+        UserHistory h = historyByEmail.get(email);
+        if (h != null) return h;
+        creationLock.lock();
+        try {
+            return historyByEmail.computeIfAbsent(email,
+                    k -> new UserHistory(columnarNutrition ? new ColumnarNutritionLog() : new ListNutritionLog()));
+        } finally {
+            creationLock.unlock();
+        }
+    }
+
+    /**
+     * Applies a journal record during replay.
+     * @param r the record read back from the journal
+     */
+    void apply(JournalRecord r) {
+        switch (r.kind) {
+            case JournalRecord.WORKOUT -> addWorkout(r.email, r.workout);
+            case JournalRecord.NUTRITION -> addNutrition(r.email,
+                    new NutritionEntry(NutritionEntry.parseId(r.id), r.item, r.grams, r.kcal, LocalDateTime.parse(r.at)));
+            case JournalRecord.USER -> {
+                User u = getOrCreateUser(r.email, r.name);
+                u.name = r.name;
+                u.goal.dailyBurnTarget = r.burnTarget;
+            }
+            case JournalRecord.NOTES -> {
+                UserHistory h = historyByEmail.get(r.email);
+                if (h == null) return;
+                h.lock.lock();
+                try {
+                    if (r.index >= 0 && r.index < h.workouts.size()) h.replaceNotes(r.index, r.notes);
+                } finally {
+                    h.lock.unlock();
+                }
+            }
+            default -> { }
+        }
+    }
 }
\ No newline at end of file
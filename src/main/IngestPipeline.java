@@ -0,0 +1,347 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A pipelined ingest path for high-rate sources, like the {@link ApiServer}, whose services log through one.
+ * Producers publish events
+ * into a pre-allocated ring of slots; three single-threaded stages then walk the ring in order:
+ * <ol>
+ *     <li>apply: adds the record to the user's history in the {@link InMemoryStore} (readers see it from here on)</li>
+ *     <li>aggregate: adds it to the user's {@link DailyTotals}</li>
+ *     <li>persist: appends it to the {@link Database} journal, then frees the slot</li>
+ * </ol>
+ * Each stage only reads slots the stage before it has finished, tracked by one sequence number per stage, so no
+ * locks are shared between stages and the pipeline allocates nothing per event (journal encoding still does).
+ * When the ring is full, producers either wait ({@link Overflow#BLOCK}) or have the event rejected
+ * ({@link Overflow#DROP}).
+ * <p>
+ * If a stage fails on an event, the pipeline stops there: that event and everything after it is neither counted
+ * as persisted nor handled further, and {@link #publish}, {@link #drain()} and {@link #close()} throw
+ * IllegalStateException with the failure as the cause.
+ * <p>
+ * Notes edits refer to a workout by its position in the user's list, so the journal order of a user's workouts
+ * must match the in-memory order. The store keeps it so when a user's records come both through a pipeline and
+ * through its own logging methods: before it journals a workout or notes edit directly, it waits for the
+ * workouts the pipeline has applied for that user to be persisted. A user's workouts should not come through
+ * more than one pipeline, since nothing orders two pipelines' persist stages.
+ * <p>
+ * The "ingest.queueDepth", "ingest.applyLag", "ingest.aggregateLag", "ingest.persistLag" and "ingest.dropped"
+ * gauges in {@link Metrics} follow the most recently created pipeline.
+ */
+public class IngestPipeline implements AutoCloseable {
+    static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /**
+     * What a producer does when the ring is full.
+     */
+    enum Overflow { BLOCK, DROP }
+
+    private static final byte WORKOUT = 1;
+    private static final byte NUTRITION = 2;
+    private static final LongAdder FAILURES = Metrics.counter("ingest.failures");
+
+    /* A reusable ring entry. Written by one producer, then read by each stage in turn. */
+    private static final class Slot {
+        volatile long sequence = -1;    // set last by the producer: the slot holds event number `sequence`
+        byte kind;
+        String email;
+        Workout workout;
+        NutritionEntry nutrition;
+    }
+
+    private final InMemoryStore store;
+    private final Overflow overflow;
+    private final Slot[] ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final AtomicLong applied = new AtomicLong(-1);
+    private final AtomicLong aggregated = new AtomicLong(-1);
+    private final AtomicLong persisted = new AtomicLong(-1);
+    private final LongAdder dropped = new LongAdder();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running = true;
+    private volatile RuntimeException failure;
+    private boolean closed;
+
+    /**
+     * Creates the pipeline and starts its three stage threads.
+     * @param store the store events are applied to (and whose database they are persisted to)
+     * @param capacity the number of slots, rounded up to a power of two
+     * @param overflow what producers do when every slot is in use
+     */
+    IngestPipeline(InMemoryStore store, int capacity, Overflow overflow) {
+        this.store = store;
+        this.overflow = overflow;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        ring = new Slot[size];
+        for (int i = 0; i < size; i++) ring[i] = new Slot();
+        mask = size - 1;
+        stage("ingest-apply", null, applied, this::apply);
+        stage("ingest-aggregate", applied, aggregated, this::aggregate);
+        stage("ingest-persist", aggregated, persisted, this::persist);
+        store.pipelines.add(this);
+        Metrics.gauge("ingest.queueDepth", this::queueDepth);
+        Metrics.gauge("ingest.applyLag", this::applyLag);
+        Metrics.gauge("ingest.aggregateLag", this::aggregateLag);
+        Metrics.gauge("ingest.persistLag", this::persistLag);
+        Metrics.gauge("ingest.dropped", this::dropped);
+    }
+
+    /**
+     * Publishes a workout.
+     * @param email the owner of the workout
+     * @param w the workout
+     * @return false if the ring was full and the policy is {@link Overflow#DROP} (or the pipeline is closed)
+     * @throws IllegalStateException if the pipeline stopped on a failure
+     */
+    boolean publish(String email, Workout w) {
+        long seq = claim();
+        if (seq < 0) return false;
+        Slot s = ring[(int) seq & mask];
+        s.kind = WORKOUT;
+        s.email = email;
+        s.workout = w;
+        s.sequence = seq;
+        store.database.compactIfDue(store);
+        return true;
+    }
+
+    /**
+     * Publishes a nutrition entry.
+     * @param email the owner of the entry
+     * @param n the entry
+     * @return false if the ring was full and the policy is {@link Overflow#DROP} (or the pipeline is closed)
+     * @throws IllegalStateException if the pipeline stopped on a failure
+     */
+    boolean publish(String email, NutritionEntry n) {
+        long seq = claim();
+        if (seq < 0) return false;
+        Slot s = ring[(int) seq & mask];
+        s.kind = NUTRITION;
+        s.email = email;
+        s.nutrition = n;
+        s.sequence = seq;
+        store.database.compactIfDue(store);
+        return true;
+    }
+
+    /**
+     * @return the number of slots
+     */
+    int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * @return events published but not yet persisted (slots in use)
+     */
+    long queueDepth() {
+        return claimed.get() - persisted.get();
+    }
+
+    /**
+     * @return events published but not yet applied to the store
+     */
+    long applyLag() {
+        return claimed.get() - applied.get();
+    }
+
+    /**
+     * @return events applied to the store but not yet added to the daily totals
+     */
+    long aggregateLag() {
+        return applied.get() - aggregated.get();
+    }
+
+    /**
+     * @return events totalled but not yet appended to the journal
+     */
+    long persistLag() {
+        return aggregated.get() - persisted.get();
+    }
+
+    /**
+     * @return how many events have been accepted
+     */
+    long published() {
+        return claimed.get() + 1;
+    }
+
+    /**
+     * @return how many events were rejected because the ring was full
+     */
+    long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Waits until every event applied to the store so far has also been persisted. Called by the store with every
+     * user's lock held before a snapshot is captured, when the apply stage cannot move.
+     */
+    void awaitPersisted() {
+        long target = applied.get();
+        while (persisted.get() < target && running) LockSupport.parkNanos(50_000);
+    }
+
+    /**
+     * Waits until the given event has been persisted. Called by the store with the event's user lock held.
+     * @param seq the event's sequence number
+     * @throws IllegalStateException if the pipeline stopped on a failure first, so the event never will be
+     */
+    void awaitPersisted(long seq) {
+        while (persisted.get() < seq) {
+            if (failure != null) throw stopped();
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    /**
+     * Waits until everything published so far has been persisted.
+     * @throws IllegalStateException if the pipeline stopped on a failure first
+     */
+    void drain() {
+        long target = claimed.get();
+        while (persisted.get() < target && running) LockSupport.parkNanos(50_000);
+        if (failure != null) throw stopped();
+    }
+
+    /**
+     * Stops accepting events, persists everything already published, stops the stage threads and flushes the
+     * journal.
+     * @throws IllegalStateException if the pipeline had stopped on a failure, so some events were not persisted
+     */
+    @Override public void close() {
+        long target;
+        // stop new claims first, so the last claimed sequence is final
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            target = claimed.getAndSet(Long.MAX_VALUE / 2);
+        }
+        // wait for producers that claimed a slot but have not published it yet
+        while (persisted.get() < target && failure == null) LockSupport.parkNanos(50_000);
+        running = false;
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        claimed.set(target);
+        store.pipelines.remove(this);
+        store.database.flush();
+        if (failure != null) throw stopped();
+    }
+
+    /* Claims the next sequence number, or returns -1 if the event is to be dropped. */
+    private long claim() {
+        int idle = 0;
+        while (true) {
+            if (failure != null) throw stopped();
+            long current = claimed.get();
+            if (current >= Long.MAX_VALUE / 2) return -1; // closed
+            long next = current + 1;
+            if (next - ring.length > persisted.get()) {
+                if (overflow == Overflow.DROP) {
+                    dropped.increment();
+                    return -1;
+                }
+                idle = backOff(idle);
+                continue;
+            }
+            if (claimed.compareAndSet(current, next)) return next;
+        }
+    }
+
+    private interface Handler {
+        void handle(Slot s);
+    }
+
+    /* Starts a thread that hands each slot after `own` to the handler once `upstream` (or the producer) is done. */
+    private void stage(String name, AtomicLong upstream, AtomicLong own, Handler handler) {
+        Thread t = new Thread(() -> {
+            int idle = 0;
+            while (running) {
+                long next = own.get() + 1;
+                long available = upstream != null ? upstream.get() : published(next);
+                if (available < next) {
+                    idle = backOff(idle);
+                    continue;
+                }
+                idle = 0;
+                for (long seq = next; seq <= available && running; seq++) {
+                    try {
+                        handler.handle(ring[(int) seq & mask]);
+                    } catch (RuntimeException e) {
+                        // the event is not done, so it must not count as such: stop here
+                        e.printStackTrace();
+                        fail(name, seq, e);
+                        return;
+                    }
+                    own.set(seq);   // lets the next stage move as soon as each event is done
+                }
+            }
+        }, name);
+        t.setDaemon(true);
+        threads.add(t);
+        t.start();
+    }
+
+    /* Records the first failure and stops every stage. */
+    private synchronized void fail(String stage, long seq, RuntimeException e) {
+        if (failure == null) {
+            String email = ring[(int) seq & mask].email;
+            failure = new IllegalStateException(stage + " failed on event " + seq + " for " + email, e);
+            FAILURES.increment();
+        }
+        running = false;
+    }
+
+    private IllegalStateException stopped() {
+        return new IllegalStateException("ingest pipeline stopped on a failure", failure);
+    }
+
+    /* The highest sequence from `next` on whose slots have all been published by their producers. */
+    private long published(long next) {
+        long seq = next;
+        while (ring[(int) seq & mask].sequence == seq) seq++;
+        return seq - 1;
+    }
+
+    private void apply(Slot s) {
+        if (s.kind == WORKOUT) store.applyWorkout(s.email, s.workout, this, s.sequence);
+        else store.applyNutrition(s.email, s.nutrition);
+    }
+
+    private void aggregate(Slot s) {
+        DailyTotals totals = store.totals(s.email);
+        if (s.kind == WORKOUT) totals.addWorkout(s.workout);
+        else totals.addNutrition(s.nutrition);
+        // only now are both the entry and its totals visible; nothing is built while nobody listens
+        if (!store.hasSubscribers()) return;
+        store.publish(s.kind == WORKOUT ? new StoreEvent.WorkoutAdded(s.email, s.workout)
+                : new StoreEvent.NutritionAdded(s.email, s.nutrition));
+    }
+
+    private void persist(Slot s) {
+        if (s.kind == WORKOUT) store.database.appendWorkout(s.email, s.workout);
+        else store.database.appendNutrition(s.email, s.nutrition);
+        s.email = null;
+        s.workout = null;
+        s.nutrition = null;
+    }
+
+    /* Spins briefly, then yields, then parks; returns the new idle count. */
+    private static int backOff(int idle) {
+        if (idle < 100) Thread.onSpinWait();
+        else if (idle < 200) Thread.yield();
+        else LockSupport.parkNanos(100_000);
+        return idle + 1;
+    }
+}
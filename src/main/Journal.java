@@ -0,0 +1,257 @@
+package main;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * An append-only log of store mutations. Records are written one JSON object per line into numbered
+ * segment files ("segment-000001.jsonl", ...). A snapshot file ("snapshot-000007.jsonl") holds the full
+ * state covering every segment up to and including its number, so older segments can be deleted.
+ */
+public class Journal {
+    static final long SEGMENT_BYTES = 4L << 20;
+
+    private final Path dir;
+    private final ObjectMapper mapper;
+
+    private FileOutputStream out;
+    private int segment;
+    private long segmentBytes;
+    private long recordsSinceSnapshot;
+
+    /**
+     * Creates a journal rooted at the given directory. Nothing is opened until the first append.
+     * @param dir the directory holding segment and snapshot files
+     * @param mapper the mapper used for records
+     */
+    Journal(Path dir, ObjectMapper mapper) {
+        this.dir = dir;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Encodes a record as one journal line (including the trailing newline).
+     * @param r the record to encode
+     */
+    byte[] encode(JournalRecord r) throws IOException {
+        return (mapper.writeValueAsString(r) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes records as journal lines, streaming them all through one generator.
+     * @param records the records to encode
+     * @param to where the lines go
+     */
+    void encode(List<JournalRecord> records, OutputStream to) throws IOException {
+        ObjectWriter w = mapper.writerFor(JournalRecord.class);
+        try (JsonGenerator g = mapper.createGenerator(to)) {
+            g.setRootValueSeparator(null);
+            for (JournalRecord r : records) {
+                w.writeValue(g, r);
+                g.writeRaw('\n');
+            }
+        }
+    }
+
+    /**
+     * Appends one record to the current segment, rolling over to a new segment when it is full.
+     * @param r the record to append
+     */
+    void append(JournalRecord r) throws IOException {
+        byte[] line = encode(r);
+        write(line, 0, line.length, 1);
+    }
+
+    /**
+     * Appends already encoded lines to the current segment in a single write.
+     * @param buf the encoded lines
+     * @param off where the lines start in buf
+     * @param len how many bytes to write
+     * @param records how many records the bytes hold
+     */
+    void write(byte[] buf, int off, int len, int records) throws IOException {
+        if (out == null || segmentBytes >= SEGMENT_BYTES) roll();
+        out.write(buf, off, len);
+        segmentBytes += len;
+        recordsSinceSnapshot += records;
+    }
+
+    /**
+     * Appends already encoded lines and forces them to the storage device. If either step fails the segment is cut
+     * back to where it ended before, so the same lines can be written again without leaving a torn or duplicate
+     * line behind them.
+     * @param buf the encoded lines
+     * @param off where the lines start in buf
+     * @param len how many bytes to write
+     * @param records how many records the bytes hold
+     */
+    void writeAndSync(byte[] buf, int off, int len, int records) throws IOException {
+        if (out == null || segmentBytes >= SEGMENT_BYTES) roll();
+        try {
+            out.write(buf, off, len);
+            out.getChannel().force(false);
+        } catch (IOException e) {
+            rewind();
+            throw e;
+        }
+        segmentBytes += len;
+        recordsSinceSnapshot += records;
+    }
+
+    /* Cuts the current segment back to the bytes counted in segmentBytes, after a failed write */
+    private void rewind() {
+        try {
+            out.getChannel().truncate(segmentBytes);
+        } catch (IOException e) {
+            // where the segment ends is unknown now: continue in a new one; replay skips a torn tail
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Forces everything written so far in the current segment down to the storage device.
+     */
+    void sync() throws IOException {
+        if (out != null) out.getChannel().force(false);
+    }
+
+    /**
+     * @return how many records have been appended since the last snapshot (or since replay)
+     */
+    long recordsSinceSnapshot() {
+        return recordsSinceSnapshot;
+    }
+
+    /**
+     * @return the combined size of the journal's segment and snapshot files
+     */
+    long bytesOnDisk() throws IOException {
+        if (!Files.isDirectory(dir)) return 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.mapToLong(p -> p.toFile().length()).sum();
+        }
+    }
+
+    /**
+     * @return true if a snapshot file exists, meaning the legacy workouts.json is no longer authoritative
+     */
+    boolean hasSnapshot() throws IOException {
+        return latest("snapshot-") >= 0;
+    }
+
+    /**
+     * Feeds the latest snapshot and every segment written after it to the given consumer, in order.
+     * A torn final line (from a crash mid-write) is skipped.
+     * @param apply receives each record
+     */
+    void replay(Consumer<JournalRecord> apply) throws IOException {
+        if (!Files.isDirectory(dir)) return;
+        int snap = latest("snapshot-");
+        if (snap >= 0) readFile(file("snapshot-", snap), apply);
+        for (int n : numbers("segment-")) {
+            if (n > snap) {
+                recordsSinceSnapshot += readFile(file("segment-", n), apply);
+            }
+            segment = Math.max(segment, n);
+        }
+        segment = Math.max(segment, snap);
+    }
+
+    /**
+     * Writes a new snapshot holding the given records, then deletes the segments and snapshots it replaces.
+     * The snapshot is written to a temporary file and moved into place, so a crash leaves either the old
+     * or the new state intact.
+     * @param records the complete current state, expressed as records
+     */
+    void snapshot(List<JournalRecord> records) throws IOException {
+        roll();
+        int covered = segment - 1;
+        Files.createDirectories(dir);
+        Path tmp = dir.resolve("snapshot.tmp");
+        try (OutputStream o = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+            encode(records, o);
+        }
+        Files.move(tmp, file("snapshot-", covered), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (int n : numbers("segment-")) if (n <= covered) Files.deleteIfExists(file("segment-", n));
+        for (int n : numbers("snapshot-")) if (n < covered) Files.deleteIfExists(file("snapshot-", n));
+        recordsSinceSnapshot = 0;
+    }
+
+    /**
+     * Closes the current segment.
+     */
+    void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private void roll() throws IOException {
+        close();
+        Files.createDirectories(dir);
+        segment++;
+        out = new FileOutputStream(file("segment-", segment).toFile(), true);
+        segmentBytes = 0;
+    }
+
+    private long readFile(Path p, Consumer<JournalRecord> apply) throws IOException {
+        long count = 0;
+        try (BufferedReader r = Files.newBufferedReader(p, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isBlank()) continue;
+                JournalRecord rec;
+                try {
+                    rec = mapper.readValue(line, JournalRecord.class);
+                } catch (JsonProcessingException e) {
+                    break; // torn tail
+                }
+                apply.accept(rec);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Path file(String prefix, int n) {
+        return dir.resolve(String.format("%s%06d.jsonl", prefix, n));
+    }
+
+    private int latest(String prefix) throws IOException {
+        List<Integer> ns = numbers(prefix);
+        return ns.isEmpty() ? -1 : ns.get(ns.size() - 1);
+    }
+
+    private List<Integer> numbers(String prefix) throws IOException {
+        List<Integer> ns = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return ns;
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(prefix) && n.endsWith(".jsonl"))
+                    .forEach(n -> ns.add(Integer.parseInt(n.substring(prefix.length(), n.length() - 6))));
+        }
+        ns.sort(null);
+        return ns;
+    }
+}
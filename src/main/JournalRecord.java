@@ -0,0 +1,68 @@
+package main;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A single line in the journal. The kind decides which of the other fields are set.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JournalRecord {
+    static final String WORKOUT = "workout";
+    static final String NOTES = "notes";
+    static final String NUTRITION = "nutrition";
+    static final String USER = "user";
+
+    public String kind;
+    public String email;
+    // workout
+    public Workout workout;
+    // notes (index is the workout's position in the user's list)
+    public Integer index;
+    public String notes;
+    // nutrition
+    public String id;
+    public String at;
+    public String item;
+    public Integer grams;
+    public Integer kcal;
+    // user (the whole user is rewritten whenever it changes; the last record wins)
+    public String name;
+    public Integer burnTarget;
+
+    /**
+     * Creates a record for a newly logged workout.
+     */
+    static JournalRecord workout(String email, Workout w) {
+        JournalRecord r = new JournalRecord();
+        r.kind = WORKOUT; r.email = email; r.workout = w;
+        return r;
+    }
+
+    /**
+     * Creates a record for an edit to a workout's notes.
+     */
+    static JournalRecord notes(String email, int index, String notes) {
+        JournalRecord r = new JournalRecord();
+        r.kind = NOTES; r.email = email; r.index = index; r.notes = notes;
+        return r;
+    }
+
+    /**
+     * Creates a record for a newly logged nutrition entry.
+     */
+    static JournalRecord nutrition(String email, NutritionEntry n) {
+        JournalRecord r = new JournalRecord();
+        r.kind = NUTRITION; r.email = email; r.id = Long.toString(n.id); r.at = n.loggedAt.toString();
+        r.item = n.itemName; r.grams = n.grams; r.kcal = n.calories;
+        return r;
+    }
+
+    /**
+     * Creates a record holding a user's current name and goal.
+     */
+    static JournalRecord user(User u) {
+        JournalRecord r = new JournalRecord();
+        r.kind = USER; r.email = u.email; r.name = u.name; r.burnTarget = u.goal.dailyBurnTarget;
+        return r;
+    }
+}
@@ -0,0 +1,72 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.Set;
+
+/**
+ * A Flight Recorder event for one write of a batch of journal lines by {@link WriteBehind}, including the fsync.
+ * A batch coalesces many callers' records, so it names every user they belong to. Off unless a recording
+ * enables it (see fitness.jfc).
+ */
+@Name("main.JournalWrite")
+@Label("Journal Write")
+@Category({"Fitnessapp", "Persistence"})
+@Description("Appending and syncing a batch of journal records")
+@Enabled(false)
+@StackTrace(false)
+public class JournalWriteEvent extends Event {
+    static final int MAX_USERS = 10;
+
+    @Label("Records")
+    int records;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Users")
+    @Description("The emails of the users whose records the batch held, the first " + MAX_USERS + " in order")
+    String users;
+
+    @Label("User Count")
+    int userCount;
+
+    @Label("Failed")
+    @Description("The write or sync threw; the batch is kept and retried")
+    boolean failed;
+
+    /**
+     * Commits the event if the recording wants it.
+     * @param records how many records the batch held
+     * @param bytes how many bytes it was
+     * @param users the users the records belong to
+     * @param failed true if it could not be written
+     */
+    void finish(int records, long bytes, Set<String> users, boolean failed) {
+        if (!shouldCommit()) return;
+        this.records = records;
+        this.bytes = bytes;
+        StringBuilder sb = new StringBuilder();
+        int n = 0;
+        for (String u : users) {
+            if (n++ == MAX_USERS) {
+                sb.append(", ...");
+                break;
+            }
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(u);
+        }
+        this.users = sb.toString();
+        this.userCount = users.size();
+        this.failed = failed;
+        commit();
+    }
+}
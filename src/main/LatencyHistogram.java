@@ -0,0 +1,95 @@
+package main;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of durations in nanoseconds, with log-linear buckets: eight per power of two, so any
+ * recorded value is reported to within 12.5%. Buckets are striped counters ({@link LongAdder}), so recording from
+ * many threads neither contends nor allocates once a stripe exists. Reading percentiles walks the buckets and is
+ * meant for the occasional MBean or log read, not the hot path.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    /* Covers values up to 2^40 ns (about 18 minutes); anything longer lands in the last bucket. */
+    private static final int MAX_BITS = 40;
+    private static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) counts[i] = new LongAdder();
+    }
+
+    /**
+     * Records one duration.
+     * @param nanos the duration in nanoseconds
+     */
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[index(nanos)].increment();
+        total.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * @return how many durations have been recorded
+     */
+    long count() {
+        return total.sum();
+    }
+
+    /**
+     * @return the mean duration in nanoseconds, or 0 if nothing was recorded
+     */
+    double mean() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @return the longest duration recorded, in nanoseconds
+     */
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * @param q the quantile, between 0 and 1 (e.g. 0.99)
+     * @return an upper bound for the quantile in nanoseconds (never above the max), or 0 if nothing was recorded
+     */
+    long percentile(double q) {
+        long[] c = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) n += c[i] = counts[i].sum();
+        if (n == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += c[i];
+            if (seen >= target) return Math.min(upperBound(i), max());
+        }
+        return max();
+    }
+
+    /* Bucket i holds the values from lowerBound(i) to upperBound(i). */
+    private static int index(long v) {
+        if (v < SUB) return (int) v;
+        int msb = 63 - Long.numberOfLeadingZeros(v);
+        if (msb >= MAX_BITS) return BUCKETS - 1;
+        int shift = msb - SUB_BITS;
+        return (shift + 1) * SUB + (int) ((v >>> shift) & (SUB - 1));
+    }
+
+    private static long upperBound(int i) {
+        if (i < SUB) return i;
+        int shift = i / SUB - 1;
+        long lower = (long) (SUB + i % SUB) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
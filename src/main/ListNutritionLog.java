@@ -0,0 +1,30 @@
+package main;
+
+import java.util.Collection;
+
+/**
+ * Keeps nutrition entries as objects in a {@link Timeline}.
+ */
+public class ListNutritionLog implements NutritionLog {
+    // NutritionEntry (40) + LocalDateTime (24) + LocalDate (24) + LocalTime (24) + list and index slots (8)
+    static final int BYTES_PER_ENTRY = 120;
+
+    private final Timeline<NutritionEntry> entries = new Timeline<>();
+
+    @Override public void add(NutritionEntry n) {
+        entries.add(n.day(), n);
+    }
+
+    @Override public void addAll(Collection<NutritionEntry> ns) {
+        for (NutritionEntry n : ns) entries.append(n.day(), n);
+        entries.publish();
+    }
+
+    @Override public HistoryView<NutritionEntry> view() {
+        return entries.snapshot();
+    }
+
+    @Override public long estimatedBytes() {
+        return (long) entries.snapshot().size() * BYTES_PER_ENTRY;
+    }
+}
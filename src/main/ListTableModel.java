@@ -0,0 +1,94 @@
+package main;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+
+/**
+ * A read-only table model over a list the store handed out (a view of one of a user's immutable
+ * {@link HistoryView}s), so nothing is copied. Cells are formatted only when the table asks for them, which it
+ * does for the rows it paints.
+ * <p>
+ * The store's views of the same query only ever grow, so when a newer view of the same query just adds rows at
+ * the end, only those rows are announced to the table; anything else is a full data change.
+ * @param <T> the row type
+ */
+public class ListTableModel<T> extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    /**
+     * Formats one cell of a row. Given the list and index rather than the entry, so views that keep their rows in
+     * columns (like {@link NutritionRows}) can be read without building an entry per cell.
+     */
+    interface Cells<T> {
+        Object value(List<T> rows, int row, int column);
+    }
+
+    private final String[] columns;
+    private final Cells<T> cells;
+    private final BiPredicate<T, T> same;
+    private List<T> rows = List.of();
+    private Object query;
+
+    /**
+     * @param cells formats the cells
+     * @param same tells whether two rows from different views of the same query are the same entry
+     * @param columns the column names
+     */
+    ListTableModel(Cells<T> cells, BiPredicate<T, T> same, String... columns) {
+        this.cells = cells;
+        this.same = same;
+        this.columns = columns;
+    }
+
+    /**
+     * Shows the given rows instead of the current ones. Call on the event dispatch thread.
+     * @param next the rows; not copied, so the list must not change afterwards
+     * @param query identifies what the rows answer (e.g. user and day); every row shown earlier for an equal
+     *              query must still be among these, in the same order
+     */
+    void show(List<T> next, Object query) {
+        List<T> prev = rows;
+        boolean sameQuery = Objects.equals(query, this.query);
+        rows = next;
+        this.query = query;
+        int n = prev.size();
+        if (sameQuery && n == next.size() && (n == 0 || same.test(prev.get(n - 1), next.get(n - 1)))) {
+            return;
+        }
+        if (sameQuery && n < next.size() && (n == 0 || same.test(prev.get(n - 1), next.get(n - 1)))) {
+            // the old last row is still at the same index, so every old row is: only the tail is new
+            fireTableRowsInserted(n, next.size() - 1);
+        } else {
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * @param row a row index
+     * @return the entry shown in that row
+     */
+    T row(int row) {
+        return rows.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return cells.value(rows, row, column);
+    }
+}
@@ -3,24 +3,36 @@ package main;
 
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.*;
 
 /**
  * Simple sign-in screen shown when the app first opens.
  * User types email/username + password, presses Enter on password,
  * and we open the main FitnessFrame on the Nutrition tab.
+ * The store may still be loading when the window opens; signing in waits for it.
  */
 public class LoginFrame extends JFrame {
 
-    private final InMemoryStore store;
+    private final CompletableFuture<InMemoryStore> store;
 
     private JTextField userField;
     private JPasswordField passwordField;
+    private JButton signInBtn;
+    private boolean signingIn;
 
-    public LoginFrame(InMemoryStore store) {
+    public LoginFrame(CompletableFuture<InMemoryStore> store) {
         super("Fitness App - Sign In");
         this.store = store;
         initUI();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                Startup.frameShown();
+            }
+        });
     }
 
     private void initUI() {
@@ -81,7 +93,7 @@ public class LoginFrame extends JFrame {
         panel.add(passwordField, c);
 
         // Sign in button
-        JButton signInBtn = new RoundedButton("Sign In", null);
+        signInBtn = new RoundedButton("Sign In", null);
         c.gridx = 0;
         c.gridy = 3;
         c.gridwidth = 2;
@@ -97,6 +109,7 @@ public class LoginFrame extends JFrame {
     }
 
     private void attemptLogin() {
+        if (signingIn) return;
         String userText = userField.getText().trim();
 
         if (userText.isEmpty()) {
@@ -113,6 +126,31 @@ public class LoginFrame extends JFrame {
         String email = userText;
         String name  = userText; // treat it as both for now
 
+        // the store may still be loading: open the app once it has
+        signingIn = true;
+        if (!store.isDone()) {
+            signInBtn.setEnabled(false);
+            signInBtn.setText("Loading...");
+        }
+        store.whenCompleteAsync((s, e) -> {
+            if (e == null) {
+                open(s, email, name);
+                return;
+            }
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Your data could not be loaded.", "Error", JOptionPane.ERROR_MESSAGE);
+            signInBtn.setText("Sign In");
+            signInBtn.setEnabled(true);
+            signingIn = false;
+        }, SwingUtilities::invokeLater);
+    }
+
+    private void open(InMemoryStore store, String email, String name) {
+        try {
+            //setting the look and feel to Nimbus for the main window: @https://docs.oracle.com/javase/tutorial/uiswing/lookandfeel/nimbus.html
+            // by class name, which every JDK since 7 has, rather than by looking through the installed ones
+            UIManager.setLookAndFeel("javax.swing.plaf.nimbus.NimbusLookAndFeel");
+        } catch (Exception ignore) {}
         // Open the main app window and automatically log this user in
         FitnessFrame app = new FitnessFrame(store);
         app.autoLogin(email, name);      // sets current user + welcome + progress, selects Nutrition tab
@@ -1,18 +1,56 @@
 package main;
 
 import javax.swing.*;
+import java.util.concurrent.CompletableFuture;
 
 public class Main {
 
     // ======== MAIN ========
-    public static void main(String[] args) {
-        try { 
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); 
-        } catch (Exception ignored) {}
+    /**
+     * Starts the desktop app, or with {@code --server [--port=N]} a headless {@link ApiServer} instead.
+     * {@code -Dfitness.metrics.logSeconds=N} sets how often {@link Metrics} are logged (default 60 for the
+     * server, never for the desktop app). {@code -Dfitness.edt.stallMillis=N} sets how long the desktop app's
+     * event dispatch thread may be busy before the {@link EdtWatchdog} logs where it is stuck (default 200).
+     * The desktop app loads the store while it opens the login window, and logs how long {@link Startup} took.
+     */
+    public static void main(String[] args) throws Exception {
+        boolean server = false;
+        int port = ApiServer.DEFAULT_PORT;
+        for (String a : args) {
+            if (a.equals("--server")) server = true;
+            else if (a.startsWith("--port=")) port = Integer.parseInt(a.substring("--port=".length()));
+        }
 
-        InMemoryStore store = new InMemoryStore();
+        Metrics.logEvery(Long.getLong("fitness.metrics.logSeconds", server ? 60 : 0));
+        if (server) {
+            // operation timings and counters are visible in JConsole/VisualVM under "main"; the server also logs them
+            Metrics.exposeOverJmx();
+            ApiServer api = new ApiServer(new InMemoryStore(), port);
+            Runtime.getRuntime().addShutdownHook(new Thread(api::stop));
+            api.start();
+            System.out.println("Listening on port " + api.port());
+            return;
+        }
+
+        // the store loads on its own thread while the EDT builds the login window; signing in waits for it
+        CompletableFuture<InMemoryStore> store = CompletableFuture.supplyAsync(() -> {
+            InMemoryStore s = new InMemoryStore();
+            // journal writes are queued on a background thread; get them to disk before the JVM exits
+            Runtime.getRuntime().addShutdownHook(new Thread(s.database::flush));
+            Startup.storeLoaded();
+            // operation timings and counters are visible in JConsole/VisualVM under "main"
+            Metrics.exposeOverJmx();
+            return s;
+        }, r -> new Thread(r, "store-loader").start());
+
+        EdtWatchdog.install(Long.getLong("fitness.edt.stallMillis", EdtWatchdog.DEFAULT_THRESHOLD_MILLIS));
 
         // Start with the login window instead of the main app
-        SwingUtilities.invokeLater(() -> new LoginFrame(store).setVisible(true));
+        SwingUtilities.invokeLater(() -> {
+            try {
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (Exception ignored) {}
+            new LoginFrame(store).setVisible(true);
+        });
     }
 }
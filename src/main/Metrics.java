@@ -0,0 +1,172 @@
+package main;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The app's operation timings, counters and gauges. Call sites hold on to their {@link Operation} or counter in a
+ * static field and record into it with no lookups or allocation:
+ * <pre>
+ * private static final Metrics.Operation LOG = Metrics.operation("WorkoutService.logWorkout");
+ * long t0 = System.nanoTime();
+ * try { ... } finally { LOG.end(t0); }
+ * </pre>
+ * Everything is recorded all the time; {@link #exposeOverJmx()} publishes it as MBeans and {@link #logEvery(long)}
+ * dumps it to the log periodically.
+ */
+public class Metrics {
+    private static final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private static final System.Logger log = System.getLogger(Metrics.class.getName());
+    private static volatile MBeanServer server;
+    private static ScheduledExecutorService reporter;
+
+    private Metrics() {
+    }
+
+    /**
+     * The latency histogram and count of one kind of operation.
+     */
+    static class Operation implements OperationMXBean {
+        final String name;
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Operation(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records one call that started at the given time.
+         * @param startNanos the call's {@link System#nanoTime()} when it started
+         */
+        void end(long startNanos) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+
+        @Override public long getCount() { return histogram.count(); }
+        @Override public double getMeanMillis() { return histogram.mean() / 1e6; }
+        @Override public double getP50Millis() { return histogram.percentile(0.5) / 1e6; }
+        @Override public double getP99Millis() { return histogram.percentile(0.99) / 1e6; }
+        @Override public double getP999Millis() { return histogram.percentile(0.999) / 1e6; }
+        @Override public double getMaxMillis() { return histogram.max() / 1e6; }
+    }
+
+    private static class Bean implements MetricsMXBean {
+        @Override public Map<String, Long> getCounters() { return counters(); }
+        @Override public Map<String, Long> getGauges() { return gauges(); }
+        @Override public String getReport() { return report(); }
+    }
+
+    /**
+     * @param name e.g. "WorkoutService.logWorkout"
+     * @return the operation with the given name, created on first use
+     */
+    static Operation operation(String name) {
+        return operations.computeIfAbsent(name, n -> {
+            Operation op = new Operation(n);
+            if (server != null) register(op);
+            return op;
+        });
+    }
+
+    /**
+     * @param name e.g. "Journal.bytesWritten"
+     * @return the counter with the given name, created on first use
+     */
+    static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Registers a value that is computed whenever it is read, replacing any gauge of the same name.
+     */
+    static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @return the current value of every counter, by name
+     */
+    static Map<String, Long> counters() {
+        Map<String, Long> m = new TreeMap<>();
+        counters.forEach((k, v) -> m.put(k, v.sum()));
+        return m;
+    }
+
+    /**
+     * @return the current value of every gauge, by name
+     */
+    static Map<String, Long> gauges() {
+        Map<String, Long> m = new TreeMap<>();
+        gauges.forEach((k, v) -> m.put(k, v.getAsLong()));
+        return m;
+    }
+
+    /**
+     * @return a table of every operation that has been called, then every counter and gauge
+     */
+    static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-40s %10s %9s %9s %9s %9s %9s  (ms)%n", "operation", "count", "mean", "p50", "p99", "p99.9", "max"));
+        for (Operation op : new TreeMap<>(operations).values()) {
+            if (op.getCount() == 0) continue;
+            sb.append(String.format("%-40s %10d %9.3f %9.3f %9.3f %9.3f %9.3f%n", op.name, op.getCount(), op.getMeanMillis(),
+                    op.getP50Millis(), op.getP99Millis(), op.getP999Millis(), op.getMaxMillis()));
+        }
+        counters().forEach((k, v) -> sb.append(String.format("%-40s %10d%n", k, v)));
+        gauges().forEach((k, v) -> sb.append(String.format("%-40s %10d%n", k, v)));
+        return sb.toString();
+    }
+
+    /**
+     * Publishes everything on the platform MBean server: one {@code main:type=Operation,name=...} per operation
+     * (including ones created later) and {@code main:type=Metrics} for the counters and gauges.
+     */
+    static synchronized void exposeOverJmx() {
+        if (server != null) return;
+        MBeanServer s = ManagementFactory.getPlatformMBeanServer();
+        try {
+            s.registerMBean(new Bean(), new ObjectName("main:type=Metrics"));
+        } catch (JMException e) {
+            e.printStackTrace();
+            return;
+        }
+        server = s;
+        for (Operation op : operations.values()) register(op);
+    }
+
+    private static void register(Operation op) {
+        try {
+            ObjectName name = new ObjectName("main:type=Operation,name=" + ObjectName.quote(op.name));
+            if (!server.isRegistered(name)) server.registerMBean(op, name);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Logs {@link #report()} at INFO every so often, on a daemon thread.
+     * @param seconds the period; 0 or less does nothing
+     */
+    static synchronized void logEvery(long seconds) {
+        if (seconds <= 0 || reporter != null) return;
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> log.log(System.Logger.Level.INFO, "Metrics:\n" + report()),
+                seconds, seconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,23 @@
+package main;
+
+import java.util.Map;
+
+/**
+ * The app's counters and gauges, as published over JMX under {@code main:type=Metrics}.
+ */
+public interface MetricsMXBean {
+    /**
+     * @return every counter (bytes written, records written, ...) by name
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return every gauge (users, entries per user, ...) by name, computed on read
+     */
+    Map<String, Long> getGauges();
+
+    /**
+     * @return a multi-line summary of every operation, counter and gauge
+     */
+    String getReport();
+}
@@ -0,0 +1,45 @@
+package main;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered 64-bit ids, generated without locks. Layout, high to low bits:
+ * 42 bits of milliseconds since 2024-01-01, a 12-bit sequence and a 10-bit node id.
+ * Ids from one generator always increase, so they sort in insertion order; when more than 4096 ids are
+ * asked for within one millisecond the sequence carries into the time bits instead of repeating.
+ */
+public class MonotonicIdGenerator implements IdGenerator {
+    static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00Z
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private final long node;
+    private final AtomicLong last = new AtomicLong();
+
+    /**
+     * @param node this process's node id, 0 to 1023; processes that log into the same store must differ
+     */
+    MonotonicIdGenerator(int node) {
+        if (node < 0 || node > MAX_NODE) throw new IllegalArgumentException("node must be 0.." + MAX_NODE);
+        this.node = node;
+    }
+
+    /**
+     * @return a generator for the node given by the fitness.nodeId system property, or a random node if unset
+     */
+    static MonotonicIdGenerator forThisNode() {
+        Integer node = Integer.getInteger("fitness.nodeId");
+        return new MonotonicIdGenerator(node != null ? node : ThreadLocalRandom.current().nextInt(MAX_NODE + 1));
+    }
+
+    @Override public long nextId() {
+        long floor = ((System.currentTimeMillis() - EPOCH_MILLIS) << (SEQUENCE_BITS + NODE_BITS)) | node;
+        while (true) {
+            long prev = last.get();
+            long next = Math.max(floor, prev + (1L << NODE_BITS));
+            if (last.compareAndSet(prev, next)) return next;
+        }
+    }
+}
@@ -8,7 +8,10 @@ import java.util.UUID;
  * Represents an entry in the nutrition list.
  */
 public class NutritionEntry {
-    final UUID id = UUID.randomUUID();
+    /* Where new entries get their ids; swap it out to change the id scheme */
+    static volatile IdGenerator ids = MonotonicIdGenerator.forThisNode();
+
+    final long id;
     LocalDateTime loggedAt;
     String itemName;
     int grams;
@@ -21,9 +24,35 @@ public class NutritionEntry {
 
     /* Creates an instance of NutritionEntry with an explicit timestamp */
     NutritionEntry(String itemName, int grams, int calories, LocalDateTime loggedAt) {
-        this.itemName = itemName;
+        this(ids.nextId(), itemName, grams, calories, loggedAt);
+    }
+
+    /* Re-creates a previously persisted entry, keeping its id */
+    NutritionEntry(long id, String itemName, int grams, int calories, LocalDateTime loggedAt) {
+        this.id = id;
+        this.itemName = Symbols.intern(itemName);
         this.grams = grams;
         this.calories = calories;
         this.loggedAt = loggedAt;
     }
+
+    /**
+     * @return the day the entry was logged, as LocalDate.toEpochDay()
+     */
+    int day() {
+        return (int) loggedAt.toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Reads back a persisted id. Ids written before entries used 64-bit ids are UUIDs; those are folded into
+     * 64 bits so they are still accepted.
+     * @param s the id as written to the journal
+     */
+    static long parseId(String s) {
+        if (s.indexOf('-') > 0) {
+            UUID u = UUID.fromString(s);
+            return u.getMostSignificantBits() ^ u.getLeastSignificantBits();
+        }
+        return Long.parseLong(s);
+    }
 }
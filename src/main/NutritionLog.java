@@ -0,0 +1,32 @@
+package main;
+
+import java.util.Collection;
+
+/**
+ * One user's nutrition entries, in the order they were logged, with day lookups.
+ * See {@link ListNutritionLog} (plain objects) and {@link ColumnarNutritionLog} (primitive columns).
+ * <p>
+ * One thread appends at a time (the store holds the user's lock); any number of threads may read through
+ * {@link #view()} without locking.
+ */
+public interface NutritionLog {
+    /**
+     * Appends an entry.
+     */
+    void add(NutritionEntry n);
+
+    /**
+     * Appends entries in order, making them visible to readers all at once.
+     */
+    void addAll(Collection<NutritionEntry> ns);
+
+    /**
+     * @return an immutable view of the entries logged so far, in O(1)
+     */
+    HistoryView<NutritionEntry> view();
+
+    /**
+     * @return a rough estimate of the heap this log uses, in bytes (64-bit JVM, compressed oops)
+     */
+    long estimatedBytes();
+}
@@ -0,0 +1,62 @@
+package main;
+
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Reads the fields of a list of nutrition entries by row without building the entries. The lists a
+ * {@link ColumnarNutritionLog} hands out implement it and read their columns; {@link #of} reads any other list
+ * through its entries.
+ */
+public interface NutritionRows {
+    /**
+     * @return the number of rows
+     */
+    int size();
+
+    /**
+     * @return when the row was logged, in UTC epoch seconds
+     */
+    long epochSec(int row);
+
+    int grams(int row);
+
+    int kcal(int row);
+
+    String item(int row);
+
+    /**
+     * @param entries a list of entries, e.g. one from {@link NutritionService#listForRange}
+     * @return its rows: the list itself if it has columns, otherwise a reader over its entries
+     */
+    static NutritionRows of(List<NutritionEntry> entries) {
+        if (entries instanceof NutritionRows rows) return rows;
+        return new NutritionRows() {
+            @Override public int size() {
+                return entries.size();
+            }
+            @Override public long epochSec(int row) {
+                return entries.get(row).loggedAt.toEpochSecond(ZoneOffset.UTC);
+            }
+            @Override public int grams(int row) {
+                return entries.get(row).grams;
+            }
+            @Override public int kcal(int row) {
+                return entries.get(row).calories;
+            }
+            @Override public String item(int row) {
+                return entries.get(row).itemName;
+            }
+        };
+    }
+
+    /**
+     * @return the calories of all the entries
+     */
+    static long kcal(List<NutritionEntry> entries) {
+        NutritionRows rows = of(entries);
+        long total = 0;
+        for (int i = 0, n = rows.size(); i < n; i++) total += rows.kcal(i);
+        return total;
+    }
+}
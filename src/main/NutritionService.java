@@ -4,15 +4,32 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /*
  * Represents an entry in the nutrition list.
  */
 public class NutritionService {
+    private static final Metrics.Operation LOG = Metrics.operation("NutritionService.logNutrition");
+    private static final Metrics.Operation LOG_BATCH = Metrics.operation("NutritionService.logBatch");
+    private static final Metrics.Operation TOTAL = Metrics.operation("NutritionService.caloriesBetween");
+    private static final Metrics.Operation LIST_DAY = Metrics.operation("NutritionService.listForDate");
+    private static final Metrics.Operation LIST_RANGE = Metrics.operation("NutritionService.listForRange");
     private final InMemoryStore store;
+    private final IngestPipeline ingest;
     NutritionService(InMemoryStore s) {
+        this(s, null);
+    }
+
+    /**
+     * @param s the store
+     * @param ingest the pipeline to log entries through, or null to log them through the store directly. Every
+     *               service over a store should use the same one, since a user's records must all take one path.
+     */
+    NutritionService(InMemoryStore s, IngestPipeline ingest) {
         store = s;
+        this.ingest = ingest;
     }
 
     /**
@@ -20,7 +37,7 @@ public class NutritionService {
      * using the current date and time.
      */
     void logNutrition(User u, String item, int grams, int kcal) {
-        store.addNutrition(u.email, new NutritionEntry(item, grams, kcal));
+        log(u, new NutritionEntry(item, grams, kcal));
     }
 
     /**
@@ -28,17 +45,104 @@ public class NutritionService {
      */
     void logNutritionForDate(User u, String item, int grams, int kcal, LocalDate date) {
         LocalDateTime ts = LocalDateTime.of(date, LocalTime.now());
-        store.addNutrition(u.email, new NutritionEntry(item, grams, kcal, ts));
+        log(u, new NutritionEntry(item, grams, kcal, ts));
+    }
+
+    /**
+     * Logs many entries for one user as a single batch and waits for them to be written to the journal.
+     * @param u the user
+     * @param ns the entries
+     * @throws java.io.UncheckedIOException if the journal could not write them; they are in the store already,
+     *         and the journal keeps retrying
+     */
+    void logNutritionBatch(User u, List<NutritionEntry> ns) {
+        long t0 = System.nanoTime();
+        try {
+            if (ingest != null) {
+                for (NutritionEntry n : ns) publish(u.email, n);
+                ingest.drain();
+            } else {
+                store.logBatch(u.email, List.of(), ns);
+            }
+            store.database.flush();
+            store.database.compactIfDue(store);
+        } finally {
+            LOG_BATCH.end(t0);
+        }
+    }
+
+    /**
+     * Logs entries for many users as a single batch (one lock acquisition per user) and waits for them all to
+     * be written to the journal.
+     * @param byEmail the entries keyed by owner email
+     * @throws java.io.UncheckedIOException if the journal could not write them; they are in the store already,
+     *         and the journal keeps retrying
+     */
+    void logNutritionBatch(Map<String, List<NutritionEntry>> byEmail) {
+        long t0 = System.nanoTime();
+        try {
+            if (ingest != null) {
+                byEmail.forEach((email, ns) -> {
+                    for (NutritionEntry n : ns) publish(email, n);
+                });
+                ingest.drain();
+            } else {
+                store.logBatch(Map.of(), byEmail);
+            }
+            store.database.flush();
+            store.database.compactIfDue(store);
+        } finally {
+            LOG_BATCH.end(t0);
+        }
+    }
+
+    /* Adds the entry to the store and appends it to the journal, directly or through the pipeline. */
+    private void log(User u, NutritionEntry n) {
+        long t0 = System.nanoTime();
+        try {
+            if (ingest != null) {
+                publish(u.email, n);
+            } else {
+                store.logNutrition(u.email, n);
+                store.database.compactIfDue(store);
+            }
+        } finally {
+            LOG.end(t0);
+        }
+    }
+
+    private void publish(String email, NutritionEntry n) {
+        if (!ingest.publish(email, n)) throw new RejectedExecutionException("ingest pipeline is closed");
     }
 
     /**
      * Gives the daily calorie count for a given date and user.
      */
     int dailyCalories(User u, LocalDate date) {
-        return store.getNutrition(u.email).stream()
-                .filter(n -> n.loggedAt.toLocalDate().equals(date))
-                .mapToInt(n -> n.calories)
-                .sum();
+        return (int) caloriesBetween(u, date, date);
+    }
+
+    /**
+     * Gives the calories a user ate between the given dates (inclusive), from the running daily totals.
+     */
+    long caloriesBetween(User u, LocalDate start, LocalDate end) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        try {
+            return store.total(u.email, DailyTotals.Metric.EATEN_KCAL, (int) start.toEpochDay(), (int) end.toEpochDay());
+        } finally {
+            TOTAL.end(t0);
+            event.finish(TOTAL, u, WorkoutService.days(start, end), 0);
+        }
+    }
+
+    /**
+     * Gives the calories a user ate over the given number of days ending on (and including) the given date,
+     * e.g. 7, 30, 90 or 365.
+     */
+    long caloriesLastDays(User u, LocalDate end, int days) {
+        return caloriesBetween(u, end.minusDays(days - 1), end);
     }
 
     /**
@@ -53,22 +157,37 @@ public class NutritionService {
      * Gives a list of nutrition objects from a user for a specific day.
      */
     List<NutritionEntry> listForDate(User u, LocalDate date) {
-        return store.getNutrition(u.email).stream()
-                .filter(n -> n.loggedAt.toLocalDate().equals(date))
-                .collect(Collectors.toList());
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        int entries = 0;
+        try {
+            List<NutritionEntry> ns = store.nutritionForDay(u.email, (int) date.toEpochDay());
+            entries = ns.size();
+            return ns;
+        } finally {
+            LIST_DAY.end(t0);
+            event.finish(LIST_DAY, u, 1, entries);
+        }
     }
 
 
     /**
-     * Returns all nutrition entries for a user between the given dates (inclusive).
+     * Returns all nutrition entries for a user between the given dates (inclusive), ordered by day.
      */
     List<NutritionEntry> listForRange(User u, LocalDate start, LocalDate end) {
-        return store.getNutrition(u.email).stream()
-                .filter(n -> {
-                    LocalDate d = n.loggedAt.toLocalDate();
-                    return !d.isBefore(start) && !d.isAfter(end);
-                })
-                .collect(Collectors.toList());
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        int entries = 0;
+        try {
+            List<NutritionEntry> ns = store.nutritionForRange(u.email, (int) start.toEpochDay(), (int) end.toEpochDay());
+            entries = ns.size();
+            return ns;
+        } finally {
+            LIST_RANGE.end(t0);
+            event.finish(LIST_RANGE, u, WorkoutService.days(start, end), entries);
+        }
     }
 
 }
\ No newline at end of file
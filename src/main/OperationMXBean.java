@@ -0,0 +1,19 @@
+package main;
+
+/**
+ * Latency and count of one instrumented operation, as published over JMX under
+ * {@code main:type=Operation,name=<operation>}. Durations are in milliseconds.
+ */
+public interface OperationMXBean {
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+}
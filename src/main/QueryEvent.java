@@ -0,0 +1,52 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for one {@link WorkoutService} or {@link NutritionService} query. Off unless a
+ * recording enables it (see fitness.jfc); when off, begin() and {@link #finish} compile down to nothing.
+ * It has no byte count: a query hands out a view over the store's own arrays and neither reads nor copies any.
+ */
+@Name("main.Query")
+@Label("Query")
+@Category({"Fitnessapp", "Queries"})
+@Description("A workout or nutrition query")
+@Enabled(false)
+@StackTrace(false)
+public class QueryEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("User")
+    String user;
+
+    @Label("Days")
+    @Description("How many days the query covers")
+    int days;
+
+    @Label("Entries")
+    @Description("How many workouts or nutrition entries were returned")
+    int entries;
+
+    /**
+     * Commits the event if the recording wants it.
+     * @param op the operation that ran
+     * @param u the user the query was for
+     * @param days how many days the query covered (0 for all of them)
+     * @param entries how many entries it returned (0 for totals)
+     */
+    void finish(Metrics.Operation op, User u, int days, int entries) {
+        if (!shouldCommit()) return;
+        this.operation = op.name;
+        this.user = u.email;
+        this.days = days;
+        this.entries = entries;
+        commit();
+    }
+}
@@ -0,0 +1,101 @@
+package main;
+
+import javax.swing.Timer;
+import java.awt.Component;
+import java.awt.event.HierarchyEvent;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces requests to refresh parts of the UI. A view is marked dirty by {@link View#invalidate()} and refreshed
+ * on a later pass of the event dispatch thread, at most once per frame: however many times it is invalidated in
+ * the meantime (say, once per key auto-repeat), it is refreshed once. A view whose components are all hidden,
+ * like one on a tab that is not selected, stays dirty and is refreshed when one of them is shown.
+ * <p>
+ * Everything here runs on the EDT. The "ui.refreshes" and "ui.refreshesCoalesced" counters in {@link Metrics}
+ * show how many refreshes ran and how many invalidations were folded into one already pending.
+ */
+public class RefreshScheduler {
+    static final int FRAME_MILLIS = 16;
+    private static final LongAdder REFRESHES = Metrics.counter("ui.refreshes");
+    private static final LongAdder COALESCED = Metrics.counter("ui.refreshesCoalesced");
+
+    private final long frameNanos;
+
+    /**
+     * @param frameMillis the least time between two refreshes of one view
+     */
+    RefreshScheduler(int frameMillis) {
+        frameNanos = TimeUnit.MILLISECONDS.toNanos(frameMillis);
+    }
+
+    /**
+     * Registers a view.
+     * @param refresh brings the view up to date
+     * @param shownIn the view's components; it is refreshed only while one of them is showing (always if none)
+     * @return the view, to invalidate
+     */
+    View view(Runnable refresh, Component... shownIn) {
+        return new View(refresh, shownIn);
+    }
+
+    /**
+     * A part of the UI that is refreshed as a whole.
+     */
+    final class View {
+        private final Runnable refresh;
+        private final Component[] shownIn;
+        private final Timer timer;
+        private boolean dirty;
+        private long lastRun;
+
+        private View(Runnable refresh, Component[] shownIn) {
+            this.refresh = refresh;
+            this.shownIn = shownIn;
+            lastRun = System.nanoTime() - frameNanos;
+            timer = new Timer(0, e -> run());
+            timer.setRepeats(false);
+            for (Component c : shownIn) {
+                c.addHierarchyListener(e -> {
+                    if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && dirty && showing()) schedule();
+                });
+            }
+        }
+
+        /**
+         * Marks the view out of date, so it is refreshed within a frame (or once it is shown).
+         */
+        void invalidate() {
+            if (dirty) {
+                COALESCED.increment();
+                return;
+            }
+            dirty = true;
+            if (showing()) schedule();
+        }
+
+        private void schedule() {
+            if (timer.isRunning()) return;
+            long wait = lastRun + frameNanos - System.nanoTime();
+            timer.setInitialDelay((int) Math.max(0, TimeUnit.NANOSECONDS.toMillis(wait)));
+            timer.start();
+        }
+
+        private void run() {
+            // hidden since it was scheduled: stays dirty until it is shown again
+            if (!dirty || !showing()) return;
+            dirty = false;
+            lastRun = System.nanoTime();
+            REFRESHES.increment();
+            refresh.run();
+        }
+
+        private boolean showing() {
+            if (shownIn.length == 0) return true;
+            for (Component c : shownIn) {
+                if (c.isShowing()) return true;
+            }
+            return false;
+        }
+    }
+}
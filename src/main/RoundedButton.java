@@ -1,21 +1,42 @@
 package main;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 
 /**
  * A GUI class for a rounded button element.
+ * <p>
+ * The rounded background is drawn once per state (normal, hover, pressed) into an image at the screen's scale,
+ * and where the text goes is worked out once; every paint after that just copies them. They are redone when the
+ * button's size, text or font changes, or when the look and feel is switched.
  */
 public class RoundedButton extends JButton {
-    private boolean hover = false, pressed = false;
-    private Color c1 = Theme.RED, c2 = Theme.RED;
+    private static final int NORMAL = 0, HOVER = 1, PRESSED = 2;
+    private static final Color OUTLINE = new Color(0, 0, 0, 40);
+    private static final AlphaComposite HIGHLIGHT = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.15f);
+
+    private final Color c1 = Theme.RED, c2 = Theme.RED;
+    /* The background of each state, for the size and scale below */
+    private final Image[] backgrounds = new Image[3];
+    private int imageW, imageH;
+    private double scaleX, scaleY;
+    /* Where the text goes, for the text and font below at the size and scale above */
+    private String layoutText;
+    private Font layoutFont;
+    private int textX, textY;
+
     RoundedButton(String text, Pedometer pedometer) {
         super(text);
         setContentAreaFilled(false);
         setFocusPainted(false);
         setBorderPainted(false);
         setOpaque(false);
+        // the model repaints when hover or press changes, and only then
+        setRolloverEnabled(true);
         addKeyListener(pedometer);
         setFocusable(true);
         setForeground(Color.WHITE);
@@ -26,33 +47,75 @@ public class RoundedButton extends JButton {
         if (text.isEmpty()) {
             setBorder(new EmptyBorder(0, 0, 0, 0));
         }
-        addMouseListener(new java.awt.event.MouseAdapter() {
-            @Override public void mouseEntered(java.awt.event.MouseEvent e) { hover = true; repaint(); }
-            @Override public void mouseExited (java.awt.event.MouseEvent e) { hover = false; repaint(); }
-            @Override public void mousePressed(java.awt.event.MouseEvent e) { pressed = true; repaint(); }
-            @Override public void mouseReleased(java.awt.event.MouseEvent e){ pressed = false; repaint(); }
-        });
     }
+
+    @Override public void updateUI() {
+        super.updateUI();
+        // called by JButton's constructor before the caches exist
+        if (backgrounds == null) return;
+        Arrays.fill(backgrounds, null);
+        layoutText = null;
+    }
+
     @Override protected void paintComponent(Graphics g) {
+        int w = getWidth(), h = getHeight();
+        if (w <= 0 || h <= 0) return;
+        // a copy, so the hints and font set here don't leak into whatever Swing paints with g next
         Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            AffineTransform tx = g2.getTransform();
+            if (w != imageW || h != imageH || tx.getScaleX() != scaleX || tx.getScaleY() != scaleY) {
+                Arrays.fill(backgrounds, null);
+                imageW = w;
+                imageH = h;
+                scaleX = tx.getScaleX();
+                scaleY = tx.getScaleY();
+                layoutText = null;
+            }
+            ButtonModel m = getModel();
+            int state = m.isPressed() ? PRESSED : m.isRollover() ? HOVER : NORMAL;
+            Image bg = backgrounds[state];
+            if (bg == null) bg = backgrounds[state] = renderBackground(g2.getDeviceConfiguration(), state, w, h);
+            g2.drawImage(bg, 0, 0, w, h, null);
+
+            String text = getText();
+            Font font = getFont();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setFont(font);
+            if (!text.equals(layoutText) || font != layoutFont) {
+                // measured as drawn: text metrics depend on the scale and hints
+                FontMetrics fm = g2.getFontMetrics();
+                textX = (w - fm.stringWidth(text)) / 2;
+                textY = (h + fm.getAscent()) / 2 - 2;
+                layoutText = text;
+                layoutFont = font;
+            }
+            g2.setColor(getForeground());
+            g2.drawString(text, textX, textY);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /* Draws one state's background at the current scale, so it stays sharp on HiDPI screens */
+    private Image renderBackground(GraphicsConfiguration gc, int state, int w, int h) {
+        BufferedImage img = gc.createCompatibleImage((int) Math.ceil(w * scaleX), (int) Math.ceil(h * scaleY),
+                Transparency.TRANSLUCENT);
+        Graphics2D g2 = img.createGraphics();
+        g2.scale(scaleX, scaleY);
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        int w = getWidth(), h = getHeight();
         Color start = c1, end = c2;
-        if (pressed) { start = start.darker(); end = end.darker(); }
-        else if (hover) { start = start.brighter(); end = end.brighter(); }
+        if (state == PRESSED) { start = start.darker(); end = end.darker(); }
+        else if (state == HOVER) { start = start.brighter(); end = end.brighter(); }
         g2.setPaint(new GradientPaint(0, 0, start, w, h, end));
         g2.fillRoundRect(0, 0, w, h, Theme.RADIUS * 2, Theme.RADIUS * 2);
-        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.15f));
+        g2.setComposite(HIGHLIGHT);
         g2.setPaint(Color.white);
         g2.fillRoundRect(2, 2, w - 4, h / 2, Theme.RADIUS, Theme.RADIUS);
         g2.setComposite(AlphaComposite.SrcOver);
-        g2.setColor(new Color(0,0,0,40));
+        g2.setColor(OUTLINE);
         g2.drawRoundRect(0, 0, w - 1, h - 1, Theme.RADIUS * 2, Theme.RADIUS * 2);
-        g2.setFont(getFont());
-        FontMetrics fm = g2.getFontMetrics();
-        int tw = fm.stringWidth(getText()), th = fm.getAscent();
-        g2.setColor(getForeground());
-        g2.drawString(getText(), (w - tw) / 2, (h + th) / 2 - 2);
         g2.dispose();
+        return img;
     }
-}
\ No newline at end of file
+}
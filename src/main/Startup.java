@@ -0,0 +1,45 @@
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the desktop app takes to start, counted from the JVM's launch: until the first window is on
+ * screen ("Startup.firstFrame"), and until it can be used, which also needs the store to have loaded
+ * ("Startup.interactive"). Each is logged once at INFO and kept in {@link Metrics}.
+ */
+public class Startup {
+    private static final Metrics.Operation FIRST_FRAME = Metrics.operation("Startup.firstFrame");
+    private static final Metrics.Operation INTERACTIVE = Metrics.operation("Startup.interactive");
+    private static final System.Logger log = System.getLogger(Startup.class.getName());
+    /* System.nanoTime() when the JVM was launched */
+    private static final long LAUNCHED = System.nanoTime()
+            - TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime());
+
+    private static boolean shown, loaded;
+
+    /**
+     * Records that the first window has opened.
+     */
+    static synchronized void frameShown() {
+        if (shown) return;
+        shown = true;
+        long nanos = System.nanoTime() - LAUNCHED;
+        report("first frame", FIRST_FRAME, nanos);
+        if (loaded) report("interactive", INTERACTIVE, nanos);
+    }
+
+    /**
+     * Records that the store has loaded.
+     */
+    static synchronized void storeLoaded() {
+        if (loaded) return;
+        loaded = true;
+        if (shown) report("interactive", INTERACTIVE, System.nanoTime() - LAUNCHED);
+    }
+
+    private static void report(String what, Metrics.Operation op, long nanos) {
+        op.histogram.record(nanos);
+        log.log(System.Logger.Level.INFO, "Startup: {0} after {1} ms", what, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+}
@@ -0,0 +1,24 @@
+package main;
+
+/**
+ * A change to one user's data, as published by {@link InMemoryStore#subscribe}. Readers see the change (in the
+ * user's snapshot and daily totals) before the event is published.
+ */
+public sealed interface StoreEvent {
+    /**
+     * @return the email of the user whose data changed
+     */
+    String email();
+
+    /** A workout was logged. */
+    record WorkoutAdded(String email, Workout workout) implements StoreEvent { }
+
+    /** A nutrition entry was logged. */
+    record NutritionAdded(String email, NutritionEntry entry) implements StoreEvent { }
+
+    /** The user's daily burn goal was set (null clears it). */
+    record GoalChanged(String email, Integer dailyBurnTarget) implements StoreEvent { }
+
+    /** The notes on one of the user's workouts were replaced. */
+    record NotesChanged(String email, Workout workout, String notes) implements StoreEvent { }
+}
@@ -0,0 +1,32 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for rebuilding the {@link InMemoryStore} from disk (legacy workouts.json, the latest
+ * snapshot and the journal segments after it). Off unless a recording enables it (see fitness.jfc).
+ */
+@Name("main.StoreLoad")
+@Label("Store Load")
+@Category({"Fitnessapp", "Persistence"})
+@Description("Rebuilding the store from workouts.json and the journal")
+@Enabled(false)
+public class StoreLoadEvent extends Event {
+    @Label("Users")
+    int users;
+
+    @Label("Entries")
+    @Description("Workouts and nutrition entries loaded")
+    long entries;
+
+    @Label("Bytes")
+    @Description("Size of workouts.json and the journal on disk")
+    @DataAmount
+    long bytes;
+}
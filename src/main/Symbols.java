@@ -0,0 +1,84 @@
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A shared, thread-safe symbol table for the small vocabularies used across the app (workout types, body parts,
+ * distance units, exercise and food names). Each distinct string gets one canonical instance and a compact int id,
+ * so records loaded from disk share strings instead of each holding its own copy, and equality checks hit the
+ * identity fast path of String.equals (or compare ids).
+ * <p>
+ * Lookups of known symbols never lock; only the first sighting of a new string does.
+ * <p>
+ * The table never shrinks and names also come from API clients, so it stops growing at {@link #MAX_SYMBOLS}
+ * (the "fitness.symbols.max" property): strings first seen after that are not interned but kept as they are,
+ * and counted in "symbols.overflow".
+ */
+public class Symbols {
+    static final int MAX_SYMBOLS = Integer.getInteger("fitness.symbols.max", 1 << 16);
+    private static final LongAdder OVERFLOW = Metrics.counter("symbols.overflow");
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static int count;
+
+    static {
+        // seed with the literals the UI uses, so its strings are already the canonical instances
+        for (String s : new String[]{"Run", "Walk", "Cycle", "Swim", "Lift",
+                "Chest", "Back", "Legs", "Shoulders", "Arms", "Core", "Full Body", "",
+                "Miles", "Steps"}) {
+            id(s);
+        }
+        for (Food f : Food.getDefaultFoods()) id(f.name);
+    }
+
+    /**
+     * @param s a string, or null
+     * @return the canonical instance equal to s (null for null), or s itself if the table is full and s is new
+     */
+    static String intern(String s) {
+        if (s == null) return null;
+        int id = id(s);     // before reading names: assigning the id may grow the array
+        return id < 0 ? s : names[id];
+    }
+
+    /**
+     * @param s a string (not null)
+     * @return the id for s, assigning a new one the first time s is seen, or -1 if s is new and the table is full
+     */
+    static int id(String s) {
+        Integer id = IDS.get(s);
+        return id != null ? id : add(s);
+    }
+
+    /**
+     * @param id an id returned by {@link #id(String)}
+     * @return the canonical string for the id
+     */
+    static String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return how many distinct symbols have been seen
+     */
+    static int size() {
+        return IDS.size();
+    }
+
+    private static synchronized int add(String s) {
+        Integer id = IDS.get(s);
+        if (id != null) return id;
+        if (count >= MAX_SYMBOLS) {
+            OVERFLOW.increment();
+            return -1;
+        }
+        String[] n = names;
+        if (count == n.length) n = Arrays.copyOf(n, count * 2);
+        n[count] = s;
+        names = n;          // publish the name before the id can be seen
+        IDS.put(s, count);
+        return count++;
+    }
+}
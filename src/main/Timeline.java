@@ -0,0 +1,134 @@
+package main;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+
+/**
+ * An append-only log of items with a day index, publishing an immutable {@link Snapshot} after every append.
+ * Slots below a snapshot's size are never written again, so a snapshot is just the backing array and a size:
+ * taking one is a single volatile read, and readers never block the writer or each other. When the array fills
+ * up the writer copies it; existing snapshots keep the old array. Replacing an item copies the array too.
+ * @param <T> the item type
+ */
+public class Timeline<T> {
+    private Object[] items = new Object[16];
+    private int size;
+    private final DayRows days = new DayRows();
+    private volatile Snapshot<T> current = new Snapshot<>(items, 0, days);
+
+    /**
+     * Appends an item. Only one thread may call this at a time.
+     * @param day the epoch day the item belongs to
+     * @param item the item
+     */
+    void add(int day, T item) {
+        append(day, item);
+        publish();
+    }
+
+    /**
+     * Appends an item without publishing it; readers see it after the next {@link #publish()}. Lets a batch be
+     * added with a single publication. Only one thread may call this at a time.
+     * @param day the epoch day the item belongs to
+     * @param item the item
+     */
+    void append(int day, T item) {
+        if (size == items.length) items = Arrays.copyOf(items, size * 2);
+        items[size] = item;
+        days.add(day, size);
+        size++;
+    }
+
+    /**
+     * Replaces the item at an index, under the same day, and publishes. The array is copied first, so snapshots
+     * already taken keep the old item. Only one thread may call this at a time.
+     * @param index the index of an item appended earlier
+     * @param item the new item
+     */
+    void set(int index, T item) {
+        Objects.checkIndex(index, size);
+        items = items.clone();
+        items[index] = item;
+        publish();
+    }
+
+    /**
+     * @return the number of items appended so far, published or not
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Makes everything appended so far visible to new snapshots.
+     */
+    void publish() {
+        current = new Snapshot<>(items, size, days);
+    }
+
+    /**
+     * @return the latest snapshot
+     */
+    Snapshot<T> snapshot() {
+        return current;
+    }
+
+    /**
+     * The items of a timeline up to some point.
+     */
+    static final class Snapshot<T> implements HistoryView<T> {
+        private final Object[] items;
+        private final int size;
+        private final DayRows days;
+
+        Snapshot(Object[] items, int size, DayRows days) {
+            this.items = items;
+            this.size = size;
+            this.days = days;
+        }
+
+        @Override public int size() {
+            return size;
+        }
+
+        @Override public List<T> all() {
+            return new AbstractList<>() {
+                @SuppressWarnings("unchecked")
+                @Override public T get(int i) {
+                    if (i >= size) throw new IndexOutOfBoundsException(i);
+                    return (T) items[i];
+                }
+                @Override public int size() {
+                    return size;
+                }
+            };
+        }
+
+        @Override public List<T> forDay(int day) {
+            return rows(days.rows(day, size));
+        }
+
+        @Override public List<T> forRange(int from, int to) {
+            return rows(days.rows(from, to, size));
+        }
+
+        @Override public NavigableSet<Integer> days() {
+            return days.days(size);
+        }
+
+        private List<T> rows(int[] rows) {
+            return new AbstractList<>() {
+                @SuppressWarnings("unchecked")
+                @Override public T get(int i) {
+                    return (T) items[rows[i]];
+                }
+                @Override public int size() {
+                    return rows.length;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for one {@link FitnessFrame} refresh (progress tab, days list, saved workouts).
+ * These run on the event dispatch thread, so a long one is a frozen window. Off unless a recording enables it
+ * (see fitness.jfc). Rows are counted rather than bytes, since the tables wrap the store's views.
+ */
+@Name("main.UiRefresh")
+@Label("UI Refresh")
+@Category({"Fitnessapp", "UI"})
+@Description("A FitnessFrame view being rebuilt")
+@Enabled(false)
+public class UiRefreshEvent extends Event {
+    @Label("View")
+    String view;
+
+    @Label("User")
+    String user;
+
+    @Label("Entries")
+    @Description("Rows put into the view's tables and lists")
+    int entries;
+
+    /**
+     * Commits the event if the recording wants it.
+     * @param view the refresh that ran
+     * @param u the signed in user, or null
+     * @param entries how many rows it showed
+     */
+    void finish(String view, User u, int entries) {
+        if (!shouldCommit()) return;
+        this.view = view;
+        this.user = u == null ? null : u.email;
+        this.entries = entries;
+        commit();
+    }
+}
@@ -0,0 +1,108 @@
+package main;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Everything the store keeps for one user: the workouts in the order they were logged with a day index over
+ * them, the user's {@link NutritionLog}, and running daily totals.
+ * <p>
+ * Writers take {@link #lock}; readers never do. After every change a new {@link UserSnapshot} is published,
+ * so a reader gets a consistent view of both logs with a single volatile read.
+ */
+public class UserHistory {
+    final ReentrantLock lock = new ReentrantLock();
+    final Timeline<Workout> workouts = new Timeline<>();
+    final NutritionLog nutrition;
+    final DailyTotals totals = new DailyTotals();
+    /* The pipeline that last applied a workout for this user and that event's sequence, until the store has
+       waited for it to be persisted; guarded by lock */
+    IngestPipeline pipeline;
+    long pipelineSeq;
+    private volatile UserSnapshot current;
+
+    /**
+     * @param nutrition where this user's nutrition entries are kept
+     */
+    UserHistory(NutritionLog nutrition) {
+        this.nutrition = nutrition;
+        publish();
+    }
+
+    /**
+     * Appends a workout and indexes it under its start day. The caller holds {@link #lock}.
+     */
+    void addWorkout(Workout w) {
+        w.index = workouts.size();
+        workouts.add(w.startDay, w);
+        totals.addWorkout(w);
+        publish();
+    }
+
+    /**
+     * Appends a nutrition entry and indexes it under the day it was logged. The caller holds {@link #lock}.
+     */
+    void addNutrition(NutritionEntry n) {
+        nutrition.add(n);
+        totals.addNutrition(n);
+        publish();
+    }
+
+    /**
+     * Appends and indexes a workout without adding it to the totals; {@link IngestPipeline} does that in a later
+     * stage. The caller holds {@link #lock}.
+     */
+    void indexWorkout(Workout w) {
+        w.index = workouts.size();
+        workouts.add(w.startDay, w);
+        publish();
+    }
+
+    /**
+     * Appends and indexes a nutrition entry without adding it to the totals. The caller holds {@link #lock}.
+     */
+    void indexNutrition(NutritionEntry n) {
+        nutrition.add(n);
+        publish();
+    }
+
+    /**
+     * Appends a batch of workouts and nutrition entries, indexing and totalling them in one pass and publishing
+     * a single snapshot at the end. The caller holds {@link #lock}.
+     */
+    void addAll(Collection<Workout> ws, Collection<NutritionEntry> ns) {
+        for (Workout w : ws) {
+            w.index = workouts.size();
+            workouts.append(w.startDay, w);
+        }
+        workouts.publish();
+        nutrition.addAll(ns);
+        totals.addAll(ws, ns);
+        publish();
+    }
+
+    /**
+     * Replaces the workout at an index with a copy carrying new notes. Snapshots already handed out keep the old
+     * workout. The caller holds {@link #lock}.
+     * @param index the workout's {@link Workout#index}
+     * @param notes the new notes
+     * @return the new workout
+     */
+    Workout replaceNotes(int index, String notes) {
+        Workout w = workouts.snapshot().all().get(index).withNotes(notes);
+        workouts.set(index, w);
+        publish();
+        return w;
+    }
+
+    /**
+     * @return the user's data as of the last completed change; never blocks
+     */
+    UserSnapshot snapshot() {
+        return current;
+    }
+
+    private void publish() {
+        current = new UserSnapshot(workouts.snapshot(), nutrition.view());
+    }
+}
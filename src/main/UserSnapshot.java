@@ -0,0 +1,12 @@
+package main;
+
+/**
+ * One user's workouts and nutrition entries as of a single point in time. Safe to keep and read from any thread
+ * for as long as needed; later changes to the user are not visible through it.
+ * @param workouts the workouts, indexed by start day
+ * @param nutrition the nutrition entries, indexed by the day they were logged
+ */
+record UserSnapshot(HistoryView<Workout> workouts, HistoryView<NutritionEntry> nutrition) {
+    static final UserSnapshot EMPTY = new UserSnapshot(new Timeline<Workout>().snapshot(),
+            new Timeline<NutritionEntry>().snapshot());
+}
@@ -1,6 +1,9 @@
 package main;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.UUID;
 
 /*
@@ -22,6 +25,63 @@ public class Workout {
     // Shared
     public int durationMin;
     public int estimatedCalories;
+    // startedAt parsed once: wall-clock seconds since 1970-01-01T00:00 and the matching LocalDate.toEpochDay()
+    @JsonIgnore long startEpochSec;
+    @JsonIgnore int startDay;
+    // position in the owner's list of workouts, set when the store adds it; -1 until then
+    @JsonIgnore int index = -1;
+
+    /**
+     * Sets the start time from its ISO string form (this is what the JSON loader calls) and parses it once.
+     * @param startedAt the start time, e.g. "2025-12-04T11:05"
+     */
+    public void setStartedAt(String startedAt) {
+        setStartTime(LocalDateTime.parse(startedAt));
+    }
+
+    /**
+     * Sets the start time, keeping the string form and the precomputed epoch values in step.
+     * @param start the start time
+     */
+    @JsonIgnore
+    void setStartTime(LocalDateTime start) {
+        startedAt = start.toString();
+        startEpochSec = start.toEpochSecond(ZoneOffset.UTC);
+        startDay = (int) Math.floorDiv(startEpochSec, 86400L);
+    }
+
+    /**
+     * Replaces the vocabulary fields with their canonical {@link Symbols} instances, so the many workouts loaded
+     * from disk share one copy of "Run", "Chest", "Miles" and so on.
+     */
+    void canonicalize() {
+        type = Symbols.intern(type);
+        bodyPart = Symbols.intern(bodyPart);
+        exerciseName = Symbols.intern(exerciseName);
+        distanceUnit = Symbols.intern(distanceUnit);
+    }
+
+    /**
+     * Workouts in the store are shared with every snapshot that holds them, so a change is made to a copy.
+     * @param notes the new notes
+     * @return a copy of this workout with the given notes
+     */
+    Workout withNotes(String notes) {
+        Workout w = new Workout();
+        w.startedAt = startedAt; w.type = type; w.bodyPart = bodyPart;
+        w.exerciseName = exerciseName; w.sets = sets; w.reps = reps;
+        w.notes = notes; w.distanceUnit = distanceUnit; w.distanceValue = distanceValue; w.steps = steps;
+        w.durationMin = durationMin; w.estimatedCalories = estimatedCalories;
+        w.startEpochSec = startEpochSec; w.startDay = startDay; w.index = index;
+        return w;
+    }
+
+    /**
+     * @return the start time (to the second) rebuilt from the epoch value, without re-parsing the string
+     */
+    LocalDateTime startTime() {
+        return LocalDateTime.ofEpochSecond(startEpochSec, 0, ZoneOffset.UTC);
+    }
 
     /**
      * Creates an instance of Workout representing a strength activity (non cardio)
@@ -37,10 +97,10 @@ public class Workout {
      */
     static Workout strength(String type, String bodyPart, LocalDateTime start, String exName, int sets, int reps, int minutes, int kcal) {
         Workout w = new Workout();
-        w.type = type; w.bodyPart = bodyPart; w.startedAt = start.toString();
+        w.type = type; w.bodyPart = bodyPart; w.setStartTime(start);
         w.exerciseName = exName; w.sets = sets; w.reps = reps;
         w.durationMin = minutes; w.estimatedCalories = kcal;
-        w.startedAt = LocalDateTime.now().toString();
+        w.canonicalize();
         return w;
     }
     
@@ -57,9 +117,10 @@ public class Workout {
      */
     static Workout cardio(String type, LocalDateTime start, String unit, Double miles, Integer steps, int minutes, int kcal) {
         Workout w = new Workout();
-        w.type = type; w.startedAt = start.toString();
+        w.type = type; w.setStartTime(start);
         w.distanceUnit = unit; w.distanceValue = miles; w.steps = steps;
         w.durationMin = minutes; w.estimatedCalories = kcal;
+        w.canonicalize();
         return w;
     }
 }
\ No newline at end of file
@@ -1,46 +1,259 @@
-package main;
-
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.util.List;
-
-/**
- * Interfaces with the memory store object - contains mostly setter & getter functions.
- */
-public class WorkoutService {
-    private final InMemoryStore store; 
-    WorkoutService(InMemoryStore s) {
-        store=s;
-    }
-
-    /**
-     * Logs a workout to the memory store object.
-     * @param u the user
-     * @param w the workout
-     */
-    void logWorkout(User u, Workout w, Database d) {
-
-        store.addWorkout(u.email, w);
-        d.writeWorkouts(store.workoutsByEmail);
-    }
-
-    /**
-     * Gives a list of workouts from the user.
-     * @param u the user
-     * @return a list of workouts from the user
-     */
-    List<Workout> listWorkouts(User u) { 
-        return store.getWorkouts(u.email); 
-    
-    }
-    /**
-     * (this function is deprecated)
-     */
-    long countWorkoutsInWeek(User u, LocalDate weekStart) { // (not used anymore; kept for reference)
-        LocalDate weekEnd = weekStart.plusDays(6);
-        return listWorkouts(u).stream().filter(w -> {
-            LocalDate d = LocalDateTime.parse(w.startedAt).toLocalDate();
-            return !d.isBefore(weekStart) && !d.isAfter(weekEnd);
-        }).count();
-    }
+package main;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Interfaces with the memory store object - contains mostly setter & getter functions.
+ */
+public class WorkoutService {
+    private static final Metrics.Operation LOG = Metrics.operation("WorkoutService.logWorkout");
+    private static final Metrics.Operation LOG_BATCH = Metrics.operation("WorkoutService.logBatch");
+    private static final Metrics.Operation UPDATE_NOTES = Metrics.operation("WorkoutService.updateNotes");
+    private static final Metrics.Operation LIST_ALL = Metrics.operation("WorkoutService.listWorkouts");
+    private static final Metrics.Operation LIST_DAY = Metrics.operation("WorkoutService.listForDate");
+    private static final Metrics.Operation LIST_RANGE = Metrics.operation("WorkoutService.listForRange");
+    private static final Metrics.Operation LIST_DAYS = Metrics.operation("WorkoutService.listWorkoutDays");
+    private static final Metrics.Operation TOTAL = Metrics.operation("WorkoutService.total");
+    private final InMemoryStore store; 
+    private final IngestPipeline ingest;
+    WorkoutService(InMemoryStore s) {
+        this(s, null);
+    }
+
+    /**
+     * @param s the store
+     * @param ingest the pipeline to log workouts through, or null to log them through the store directly. Every
+     *               service over a store should use the same one, since a user's records must all take one path.
+     */
+    WorkoutService(InMemoryStore s, IngestPipeline ingest) {
+        store = s;
+        this.ingest = ingest;
+    }
+
+    /**
+     * Logs a workout to the memory store object and appends it to the journal. Through a pipeline, the workout
+     * is in the store a moment after this returns.
+     * @param u the user
+     * @param w the workout
+     * @throws java.util.concurrent.RejectedExecutionException if the pipeline is closed
+     */
+    void logWorkout(User u, Workout w, Database d) {
+        long t0 = System.nanoTime();
+        try {
+            if (ingest != null) {
+                publish(u.email, w);
+            } else {
+                store.logWorkout(u.email, w);
+                d.compactIfDue(store);
+            }
+        } finally {
+            LOG.end(t0);
+        }
+    }
+
+    /**
+     * Logs many workouts for one user as a single batch and waits for them to be written to the journal.
+     * @param u the user
+     * @param ws the workouts, in the order they should be listed
+     * @throws java.io.UncheckedIOException if the journal could not write them; they are in the store already,
+     *         and the journal keeps retrying
+     */
+    void logWorkouts(User u, List<Workout> ws) {
+        long t0 = System.nanoTime();
+        try {
+            if (ingest != null) {
+                for (Workout w : ws) publish(u.email, w);
+                ingest.drain();
+            } else {
+                store.logBatch(u.email, ws, List.of());
+            }
+            store.database.flush();
+            store.database.compactIfDue(store);
+        } finally {
+            LOG_BATCH.end(t0);
+        }
+    }
+
+    /**
+     * Logs workouts for many users as a single batch (one lock acquisition per user) and waits for them all to
+     * be written to the journal.
+     * @param byEmail the workouts keyed by owner email
+     * @throws java.io.UncheckedIOException if the journal could not write them; they are in the store already,
+     *         and the journal keeps retrying
+     */
+    void logWorkouts(Map<String, List<Workout>> byEmail) {
+        long t0 = System.nanoTime();
+        try {
+            if (ingest != null) {
+                byEmail.forEach((email, ws) -> {
+                    for (Workout w : ws) publish(email, w);
+                });
+                ingest.drain();
+            } else {
+                store.logBatch(byEmail, Map.of());
+            }
+            store.database.flush();
+            store.database.compactIfDue(store);
+        } finally {
+            LOG_BATCH.end(t0);
+        }
+    }
+
+    private void publish(String email, Workout w) {
+        if (!ingest.publish(email, w)) throw new RejectedExecutionException("ingest pipeline is closed");
+    }
+
+    /**
+     * Replaces the notes on one of the user's workouts and appends the edit to the journal.
+     * @param u the user
+     * @param w the workout (must belong to the user)
+     * @param notes the new notes
+     * @return the workout with the new notes, which replaces the given one in the store
+     */
+    Workout updateNotes(User u, Workout w, String notes) {
+        long t0 = System.nanoTime();
+        try {
+            return store.updateNotes(u.email, w, notes);
+        } finally {
+            UPDATE_NOTES.end(t0);
+        }
+    }
+
+    /**
+     * Gives a list of workouts from the user.
+     * @param u the user
+     * @return a list of workouts from the user
+     */
+    List<Workout> listWorkouts(User u) { 
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        int entries = 0;
+        try {
+            List<Workout> ws = store.getWorkouts(u.email);
+            entries = ws.size();
+            return ws;
+        } finally {
+            LIST_ALL.end(t0);
+            event.finish(LIST_ALL, u, 0, entries);
+        }
+    }
+    /**
+     * Gives the user's workouts that started on the given day.
+     */
+    List<Workout> listForDate(User u, LocalDate date) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        int entries = 0;
+        try {
+            List<Workout> ws = store.workoutsForDay(u.email, (int) date.toEpochDay());
+            entries = ws.size();
+            return ws;
+        } finally {
+            LIST_DAY.end(t0);
+            event.finish(LIST_DAY, u, 1, entries);
+        }
+    }
+
+    /**
+     * Gives the user's workouts that started between the given dates (inclusive), ordered by day.
+     */
+    List<Workout> listForRange(User u, LocalDate start, LocalDate end) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        int entries = 0;
+        try {
+            List<Workout> ws = store.workoutsForRange(u.email, (int) start.toEpochDay(), (int) end.toEpochDay());
+            entries = ws.size();
+            return ws;
+        } finally {
+            LIST_RANGE.end(t0);
+            event.finish(LIST_RANGE, u, days(start, end), entries);
+        }
+    }
+
+    /**
+     * Gives the calories burned by the user's workouts on the given day.
+     */
+    int dailyCaloriesBurned(User u, LocalDate date) {
+        return (int) caloriesBurnedBetween(u, date, date);
+    }
+
+    /**
+     * Gives the calories burned between the given dates (inclusive), from the running daily totals.
+     */
+    long caloriesBurnedBetween(User u, LocalDate start, LocalDate end) {
+        return total(u, DailyTotals.Metric.BURNED_KCAL, start, end);
+    }
+
+    /**
+     * Gives the workout minutes logged between the given dates (inclusive).
+     */
+    long minutesBetween(User u, LocalDate start, LocalDate end) {
+        return total(u, DailyTotals.Metric.WORKOUT_MINUTES, start, end);
+    }
+
+    /**
+     * Gives the steps recorded by workouts between the given dates (inclusive).
+     */
+    long stepsBetween(User u, LocalDate start, LocalDate end) {
+        return total(u, DailyTotals.Metric.STEPS, start, end);
+    }
+
+    /**
+     * Gives the calories burned over the given number of days ending on (and including) the given date,
+     * e.g. 7, 30, 90 or 365.
+     */
+    long caloriesBurnedLastDays(User u, LocalDate end, int days) {
+        return caloriesBurnedBetween(u, end.minusDays(days - 1), end);
+    }
+
+    private long total(User u, DailyTotals.Metric m, LocalDate start, LocalDate end) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        try {
+            return store.total(u.email, m, (int) start.toEpochDay(), (int) end.toEpochDay());
+        } finally {
+            TOTAL.end(t0);
+            event.finish(TOTAL, u, days(start, end), 0);
+        }
+    }
+
+    /* The number of days from start to end, inclusive. */
+    static int days(LocalDate start, LocalDate end) {
+        return (int) (end.toEpochDay() - start.toEpochDay() + 1);
+    }
+
+    /**
+     * Gives the days on which the user logged at least one workout, newest first.
+     */
+    List<LocalDate> listWorkoutDays(User u) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        int entries = 0;
+        try {
+            List<LocalDate> days = new ArrayList<>();
+            for (int d : store.workoutDays(u.email).descendingSet()) days.add(LocalDate.ofEpochDay(d));
+            entries = days.size();
+            return days;
+        } finally {
+            LIST_DAYS.end(t0);
+            event.finish(LIST_DAYS, u, 0, entries);
+        }
+    }
+
+    /**
+     * (this function is deprecated)
+     */
+    long countWorkoutsInWeek(User u, LocalDate weekStart) { // (not used anymore; kept for reference)
+        return listForRange(u, weekStart, weekStart.plusDays(6)).size();
+    }
 }
\ No newline at end of file
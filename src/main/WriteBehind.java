@@ -0,0 +1,267 @@
+package main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Applies journal writes on a dedicated background thread so callers never wait for the disk.
+ * Queued lines are coalesced: once the first one arrives the writer waits up to maxLatencyMillis
+ * (or until maxBatch lines are queued) and then writes the whole burst with a single write and sync.
+ * <p>
+ * A batch that cannot be written is kept and retried, backing off up to {@link #MAX_RETRY_MILLIS} between
+ * attempts; every {@link #flush()} waiting behind it fails rather than reporting lines on disk that are not.
+ */
+public class WriteBehind {
+    static final long DEFAULT_MAX_LATENCY_MILLIS = 50;
+    static final int DEFAULT_MAX_BATCH = 1024;
+    static final long MAX_RETRY_MILLIS = 5000;
+    /* How many times close() tries to write what is left before giving up on it */
+    private static final int CLOSE_ATTEMPTS = 3;
+    private static final Metrics.Operation WRITE = Metrics.operation("Journal.writeAndSync");
+    private static final Metrics.Operation SNAPSHOT = Metrics.operation("Journal.snapshot");
+    private static final LongAdder BYTES_WRITTEN = Metrics.counter("journal.bytesWritten");
+    private static final LongAdder RECORDS_WRITTEN = Metrics.counter("journal.recordsWritten");
+    private static final LongAdder WRITE_FAILURES = Metrics.counter("journal.writeFailures");
+
+    /* A full-state snapshot queued behind the lines written before it; the records are built on the writer thread. */
+    private record Snapshot(Supplier<List<JournalRecord>> records) { }
+
+    /* One or more encoded lines that are written together, and whose records they are (null if no one user's) */
+    private record Block(byte[] lines, int records, String user) { }
+
+    /* A flush() waiting for everything queued before it */
+    private static final class Flush {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile IOException error;
+
+        boolean complete(IOException e) {
+            error = e;
+            done.countDown();
+            return true;
+        }
+    }
+
+    private static final Object STOP = new Object();
+
+    final long maxLatencyMillis;
+    final int maxBatch;
+
+    private final Journal journal;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    /* Set when the writer stopped with lines it could not write */
+    private volatile IOException lost;
+
+    /**
+     * Starts the writer thread for the given journal.
+     * @param journal the journal to write to; it must not be used by any other thread afterwards
+     * @param maxLatencyMillis the longest a queued line waits for others to join its batch
+     * @param maxBatch the most lines written in one batch
+     */
+    WriteBehind(Journal journal, long maxLatencyMillis, int maxBatch) {
+        this.journal = journal;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.maxBatch = maxBatch;
+        thread = new Thread(this::run, "journal-writer");
+        thread.setDaemon(true);
+        thread.start();
+        Metrics.gauge("journal.queueDepth", queue::size);
+    }
+
+    /**
+     * Queues one encoded journal line.
+     * @param line the line
+     * @param user the email of the user the record belongs to, for {@link JournalWriteEvent}
+     */
+    void enqueue(byte[] line, String user) {
+        queue.add(new Block(line, 1, user));
+    }
+
+    /**
+     * Queues several encoded journal lines as one unit; they always land in the same write.
+     * @param lines the lines, back to back
+     * @param records how many lines there are
+     * @param user the email of the user the records belong to, or null if they are not all one user's
+     */
+    void enqueue(byte[] lines, int records, String user) {
+        queue.add(new Block(lines, records, user));
+    }
+
+    /**
+     * Queues a snapshot; it is taken after every line queued before it has been written.
+     * @param records builds the complete state from data the caller captured; called on the writer thread
+     */
+    void enqueueSnapshot(Supplier<List<JournalRecord>> records) {
+        queue.add(new Snapshot(records));
+    }
+
+    /**
+     * Blocks until everything queued before this call is on disk.
+     * @throws UncheckedIOException if it could not be written; it stays queued and is retried, so a later flush
+     *         may still succeed
+     */
+    void flush() {
+        if (!thread.isAlive()) {
+            throwIfLost();
+            return;
+        }
+        Flush f = new Flush();
+        queue.add(f);
+        try {
+            f.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (f.error != null) throw new UncheckedIOException("journal write failed", f.error);
+    }
+
+    /**
+     * Flushes, stops the writer thread and closes the journal.
+     * @throws UncheckedIOException if lines could not be written; the writer is stopped regardless
+     */
+    void close() {
+        try {
+            flush();
+        } finally {
+            queue.add(STOP);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        throwIfLost();
+    }
+
+    private void throwIfLost() {
+        IOException e = lost;
+        if (e != null) throw new UncheckedIOException("journal writes were lost", e);
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        Set<String> users = new LinkedHashSet<>();
+        long backoff = 10;
+        int closeAttempts = 0;
+        try {
+            while (true) {
+                if (batch.isEmpty()) batch.add(queue.take());
+                collect(batch);
+                try {
+                    if (!writeBatch(batch, buf, users)) return;
+                    backoff = 10;
+                } catch (IOException e) {
+                    WRITE_FAILURES.increment();
+                    e.printStackTrace();
+                    buf.reset();
+                    users.clear();
+                    // what the waiting flushes asked for is not on disk
+                    batch.removeIf(o -> o instanceof Flush f && f.complete(e));
+                    queue.removeIf(o -> o instanceof Flush f && f.complete(e));
+                    if ((batch.contains(STOP) || queue.contains(STOP)) && ++closeAttempts >= CLOSE_ATTEMPTS) {
+                        lost = e;
+                        journal.close();
+                        return;
+                    }
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                    backoff = Math.min(backoff * 2, MAX_RETRY_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            // nothing will answer these any more
+            queue.removeIf(o -> o instanceof Flush f && f.complete(lost));
+        }
+    }
+
+    /* Waits for more lines to join the batch, stopping early on anything that is not lines. */
+    private void collect(List<Object> batch) throws InterruptedException {
+        if (!isLines(batch.get(0))) return;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        while (batch.size() < maxBatch) {
+            Object next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) return;
+            batch.add(next);
+            if (!isLines(next)) return;
+        }
+    }
+
+    private static boolean isLines(Object o) {
+        return o instanceof Block;
+    }
+
+    /*
+     * Writes the batch in order and removes what it has written; returns false once STOP has been handled. If a
+     * write fails, everything not yet on disk stays in the batch to be tried again.
+     */
+    private boolean writeBatch(List<Object> batch, ByteArrayOutputStream buf, Set<String> users) throws IOException {
+        int lines = 0;
+        int done = 0;
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                Object o = batch.get(i);
+                if (o instanceof Block b) {
+                    buf.write(b.lines());
+                    lines += b.records();
+                    if (b.user() != null) users.add(b.user());
+                    continue;
+                }
+                drain(buf, lines, users);
+                lines = 0;
+                done = i;
+                if (o instanceof Snapshot s) {
+                    long t0 = System.nanoTime();
+                    journal.snapshot(s.records().get());
+                    SNAPSHOT.end(t0);
+                } else if (o instanceof Flush f) {
+                    f.complete(null);
+                } else if (o == STOP) {
+                    journal.close();
+                    done = batch.size();
+                    return false;
+                }
+                done = i + 1;
+            }
+            drain(buf, lines, users);
+            done = batch.size();
+        } finally {
+            batch.subList(0, done).clear();
+        }
+        return true;
+    }
+
+    private void drain(ByteArrayOutputStream buf, int lines, Set<String> users) throws IOException {
+        if (lines == 0) return;
+        JournalWriteEvent event = new JournalWriteEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        boolean written = false;
+        try {
+            journal.writeAndSync(buf.toByteArray(), 0, buf.size(), lines);
+            WRITE.end(t0);
+            written = true;
+        } finally {
+            event.finish(lines, buf.size(), users, !written);
+        }
+        BYTES_WRITTEN.add(buf.size());
+        RECORDS_WRITTEN.add(lines);
+        buf.reset();
+        users.clear();
+    }
+}